@@ -14,10 +14,17 @@ repositories {
     maven("https://repo.osgeo.org/repository/release/")
 }
 
+// Repositories compiled without SQL dialect
+val genericDialect: SourceSet by sourceSets.creating
+
 configurations {
     all {
         exclude(module = "spring-boot-starter-logging")
     }
+    named(genericDialect.implementationConfigurationName) { extendsFrom(testImplementation.get()) }
+    named(genericDialect.compileOnlyConfigurationName) { extendsFrom(compileOnly.get()) }
+    named(genericDialect.annotationProcessorConfigurationName) { extendsFrom(annotationProcessor.get()) }
+    named(genericDialect.runtimeOnlyConfigurationName) { extendsFrom(testRuntimeOnly.get(), runtimeOnly.get()) }
 }
 
 dependencies {
@@ -41,7 +48,24 @@ dependencies {
     compileOnly("com.google.code.findbugs:jsr305:3.0.2")
 }
 
+tasks.withType<JavaCompile> {
+    if (name == genericDialect.compileJavaTaskName)
+        options.compilerArgs.add("-Aeasyjdbc.dialect=GENERIC")
+    else
+        options.compilerArgs.add("-Aeasyjdbc.dialect=H2")
+}
+
 tasks.test {
     maxHeapSize = "8G"
     useJUnitPlatform()
 }
+
+val genericDialectTest by tasks.registering(Test::class) {
+    testClassesDirs = genericDialect.output.classesDirs
+    classpath = genericDialect.runtimeClasspath
+    useJUnitPlatform()
+}
+
+tasks.check {
+    dependsOn(genericDialectTest)
+}
@@ -0,0 +1,13 @@
+package com.wavjaby.generic;
+
+import com.wavjaby.jdbc.annotation.Id;
+import com.wavjaby.jdbc.annotation.Table;
+
+@Table(name = "SETTING", repositoryClass = SettingRepository.class)
+public record Setting(
+        @Id
+        long id,
+        String groupName,
+        String name,
+        String content) {
+}
@@ -0,0 +1,15 @@
+package com.wavjaby.generic;
+
+import com.wavjaby.jdbc.annotation.Modifying;
+import com.wavjaby.jdbc.annotation.QuerySQL;
+import com.wavjaby.jdbc.annotation.Where;
+
+public interface SettingRepository {
+
+    @Modifying
+    Setting setContent(@Where String groupName, @Where String name, String content);
+
+    @Modifying
+    @QuerySQL("CONTENT IS NULL")
+    Setting initContent(@Where String groupName, @Where String name, String content);
+}
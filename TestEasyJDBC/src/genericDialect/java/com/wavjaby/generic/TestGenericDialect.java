@@ -0,0 +1,55 @@
+package com.wavjaby.generic;
+
+import com.wavjaby.jdbc.util.RepositoryInit;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ * Repositories compiled without dialect, update returning the row selects it again after the update.
+ */
+public class TestGenericDialect {
+    private JdbcTemplate jdbc;
+    private SettingRepository settingRepository;
+
+    @BeforeEach
+    public void setup() {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource(
+                "jdbc:h2:mem:generic;DB_CLOSE_DELAY=-1;DATABASE_TO_UPPER=FALSE;CASE_INSENSITIVE_IDENTIFIERS=TRUE", "sa", "");
+        jdbc = new JdbcTemplate(dataSource);
+        jdbc.execute("DROP ALL OBJECTS");
+        new RepositoryInit(jdbc).initSchemeAndTable();
+        settingRepository = new SettingRepositoryImpl(jdbc);
+
+        jdbc.update("INSERT INTO SETTING VALUES (1, 'ui', 'theme', NULL)");
+        jdbc.update("INSERT INTO SETTING VALUES (2, NULL, 'theme', NULL)");
+    }
+
+    @Test
+    public void updateReturningRow() {
+        Setting setting = settingRepository.setContent("ui", "theme", "dark");
+        assertEquals(new Setting(1, "ui", "theme", "dark"), setting);
+
+        assertNull(settingRepository.setContent("ui", "language", "en"));
+    }
+
+    @Test
+    public void updateReturningRowWithNullWhere() {
+        // Null group is compared with IS NULL in the update and in the select after it
+        Setting setting = settingRepository.setContent(null, "theme", "light");
+        assertEquals(new Setting(2, null, "theme", "light"), setting);
+        assertEquals("light", jdbc.queryForObject("SELECT CONTENT FROM SETTING WHERE ID = 2", String.class));
+        assertNull(jdbc.queryForObject("SELECT CONTENT FROM SETTING WHERE ID = 1", String.class));
+    }
+
+    @Test
+    public void updateReturningRowWithQuerySql() {
+        // Query SQL only limits the update, the updated row no longer matches it
+        assertEquals(new Setting(1, "ui", "theme", "dark"), settingRepository.initContent("ui", "theme", "dark"));
+        assertNull(settingRepository.initContent("ui", "theme", "light"));
+    }
+}
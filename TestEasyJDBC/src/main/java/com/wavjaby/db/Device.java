@@ -4,7 +4,11 @@ import com.wavjaby.jdbc.annotation.*;
 
 import java.sql.Timestamp;
 
-@Table(repositoryClass = DeviceRepository.class)
+@Table(repositoryClass = DeviceRepository.class, indexes = {
+        @Index(fieldNames = "name"),
+        @Index(name = "device_owner_created_idx", fieldNames = {"ownerId", "creationDate DESC"}),
+        @Index(fieldNames = "serialNumber", include = "model", where = "serial_number IS NOT NULL")
+})
 public record Device(
         @Id
         @GenericGenerator()
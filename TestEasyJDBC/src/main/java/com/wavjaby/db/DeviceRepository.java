@@ -1,15 +1,28 @@
 package com.wavjaby.db;
 
 import com.wavjaby.jdbc.annotation.*;
+import com.wavjaby.jdbc.annotation.conf.Direction;
 
 import java.sql.Timestamp;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
 
 
 public interface DeviceRepository {
+    record DeviceName(long id, String name) {
+    }
+
     Device addDevice(Device newRow);
 
+    @Batch
     int addDevice(List<Device> newRow);
+
+    @Batch(rowsPerStatement = 16, batchSize = 64, parallelism = 4)
+    int importDevices(List<Device> newRow);
+
+    @Batch(rowsPerStatement = 16, batchSize = 64, parallelism = 4, atomic = false)
+    int importDevicesPerPartition(List<Device> newRow);
     
     Device getDeviceById(long id);
 
@@ -19,8 +32,38 @@ public interface DeviceRepository {
 
     List<Device> getDevicesByName(String name);
 
+    List<Device> getDevicesByOwnerIdSerialNumber(long ownerId, String serialNumber);
+
+    List<Device> getDevicesByCreationDateOwnerId(Timestamp creationDate, long ownerId);
+
+    @Order(@Order.ByField(value = "creationDate", direction = Direction.DESC))
+    @Limit(10)
+    List<Device> getLatestDevicesByOwnerId(long ownerId);
+
+    @Order(@Order.ByField("creationDate"))
+    @Limit(10)
+    List<Device> getOldestDevicesByOwnerId(long ownerId);
+
+    @Order(@Order.ByField("name"))
+    @Limit(10)
+    List<Device> getDevicesByOwnerIdOrderByName(long ownerId);
+
+    DeviceName getDeviceNameById(long id);
+
+    List<DeviceName> getDeviceNamesByOwnerId(long ownerId);
+
+    void forEachDeviceByName(String name, Consumer<Device> sink);
+
     boolean checkDeviceById(long id);
 
+    List<Device> getDevicesByIds(@FieldName("id") List<Long> ids);
+
+    @Count
+    int countDevicesByIds(@FieldName("id") long[] ids);
+
+    @Delete
+    int deleteDevicesByIds(@FieldName("id") Long[] ids);
+
     @Modifying
     void updateDevice(@Where long id, long ownerId, String name, double numeric,
                      String serialNumber, String model, String manufacturer,
@@ -29,7 +72,23 @@ public interface DeviceRepository {
 
     @Delete
     void deleteDeviceById(long id);
+
+    @Modifying
+    int updateDevices(List<Device> devices);
+
+    @Delete
+    int deleteDevices(List<Device> devices);
     
     @Count
     int count();
+
+    CompletableFuture<Device> findDeviceById(long id);
+
+    CompletableFuture<List<Device>> findDevicesByOwnerId(long ownerId);
+
+    @Count
+    CompletableFuture<Integer> countAsync();
+
+    @Delete
+    CompletableFuture<Void> deleteDeviceByIdAsync(long id);
 }
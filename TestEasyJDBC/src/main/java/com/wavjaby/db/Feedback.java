@@ -17,6 +17,7 @@ public record Feedback(
         String message
 ) {
     public interface Repository {
+        @Batch(rowsPerStatement = 64)
         int save(List<Feedback> feedback);
         
         @Delete
@@ -1,10 +1,15 @@
 package com.wavjaby.db;
 
 import com.wavjaby.jdbc.annotation.*;
+import com.wavjaby.jdbc.annotation.conf.Direction;
+import com.wavjaby.jdbc.util.KeysetPage;
 import org.springframework.security.core.userdetails.UserDetailsService;
 import org.springframework.security.core.userdetails.UsernameNotFoundException;
 
 import java.util.List;
+import java.util.function.Consumer;
+import java.util.function.LongConsumer;
+import java.util.stream.Stream;
 
 
 public interface UsersRepository extends UserDetailsService {
@@ -14,9 +19,47 @@ public interface UsersRepository extends UserDetailsService {
     User loadUserByUsername(String username) throws UsernameNotFoundException;
     
     List<User> getUsers();
+
+    @FetchSize(100)
+    Stream<User> streamUsers();
+
+    @FetchSize(100)
+    Stream<User> streamUsersByActive(boolean active);
+
+    @Select(field = "username")
+    Stream<String> streamUsernames();
+
+    @FetchSize(100)
+    @Select(field = "userId")
+    void forEachUserId(LongConsumer sink);
+
+    @Select(field = "username")
+    void forEachUsernameByActive(boolean active, Consumer<String> sink);
     
     @Count
     int count();
+
+    @Upsert(fieldNames = "username")
+    boolean upsertUser(User user);
+
+    @Upsert(fieldNames = "username")
+    int upsertUsers(List<User> users);
+
+    List<User> getUsersByFirstName(@Where(ignoreCase = true) String firstName);
+
+    @Order(@Order.ByField("loginCount"))
+    @Limit(3)
+    KeysetPage<User> getUsersPageByAddress(String address, @Cursor User after);
+
+    @Order({@Order.ByField(value = "loginCount", direction = Direction.DESC), @Order.ByField("accountBalance")})
+    List<User> getUsersAfterByAddress(String address, @Cursor User after, @Limit int size);
+
+    @Order(@Order.ByField("username"))
+    List<User> getUsersByAddress(String address, @Limit int limit, @Offset long offset);
+
+    @Select(field = "username")
+    @Order(@Order.ByField("username"))
+    List<String> getUsernamesByAddress(String address, @Limit int limit);
     
     @Select(field = "username")
     List<String> getUsernames();
@@ -24,6 +67,12 @@ public interface UsersRepository extends UserDetailsService {
     @Select(field = "userId")
     List<Long> getUserIds();
 
+    @Select(field = "userId")
+    long[] getUserIdArray();
+
+    @Select(field = "loginCount")
+    int[] getLoginCountsByActive(boolean active);
+
     @Select(field = "email")
     List<String[]> getEmails();
 
@@ -0,0 +1,74 @@
+package com.wavjaby;
+
+import com.wavjaby.jdbc.util.Snowflake;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class SnowflakePerformanceTest {
+    private static final Logger log = LoggerFactory.getLogger(SnowflakePerformanceTest.class);
+    private static final int IDS_PER_ROUND = 2_000_000;
+    private static final long WORKER_ID_MASK = 0x3FF;
+
+    @Test
+    public void testSnowflakeContention() throws Exception {
+        log.info("=== Snowflake Contention Test ===");
+        // One worker id is limited to 4096 ids per millisecond, throughput stops growing at that limit
+        int cores = Runtime.getRuntime().availableProcessors();
+        for (int threads = 1; threads <= cores * 2; threads *= 2) {
+            try (ExecutorService executor = Executors.newFixedThreadPool(threads)) {
+                runRound("Platform", threads, executor);
+            }
+        }
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            runRound("Virtual", cores * 16, executor);
+        }
+    }
+
+    private void runRound(String type, int threads, ExecutorService executor) throws Exception {
+        Snowflake snowflake = new Snowflake(1, 1704067200000L);
+        int idsPerThread = IDS_PER_ROUND / threads;
+
+        long startTime = System.nanoTime();
+        List<Future<long[]>> results = new ArrayList<>(threads);
+        for (int i = 0; i < threads; i++) {
+            results.add(executor.submit(() -> {
+                long[] ids = new long[idsPerThread];
+                for (int j = 0; j < ids.length; j++)
+                    ids[j] = snowflake.nextId();
+                return ids;
+            }));
+        }
+
+        long[] allIds = new long[idsPerThread * threads];
+        int offset = 0;
+        for (Future<long[]> result : results) {
+            long[] ids = result.get();
+            // Ids of one thread are increasing
+            for (int j = 1; j < ids.length; j++)
+                assertTrue(ids[j] > ids[j - 1]);
+            System.arraycopy(ids, 0, allIds, offset, ids.length);
+            offset += ids.length;
+        }
+        long duration = System.nanoTime() - startTime;
+
+        Arrays.sort(allIds);
+        for (int i = 1; i < allIds.length; i++)
+            assertTrue(allIds[i] != allIds[i - 1], "Duplicate id: " + allIds[i]);
+        assertEquals(1, (allIds[0] >> 12) & WORKER_ID_MASK);
+
+        log.info("{} threads {}: {} ms, {} ids/ms", type, threads,
+                TimeUnit.NANOSECONDS.toMillis(duration), Math.round(allIds.length / (duration / 1e6)));
+    }
+}
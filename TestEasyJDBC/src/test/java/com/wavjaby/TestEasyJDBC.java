@@ -1,6 +1,8 @@
 package com.wavjaby;
 
 import com.wavjaby.db.*;
+import com.wavjaby.jdbc.util.FastResultSetExtractor;
+import com.wavjaby.jdbc.util.KeysetPage;
 import com.wavjaby.jdbc.util.RepositoryInit;
 import com.wavjaby.jdbc.util.Snowflake;
 import org.junit.jupiter.api.AfterAll;
@@ -9,13 +11,20 @@ import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.IncorrectResultSetColumnCountException;
+import org.springframework.jdbc.core.JdbcTemplate;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
@@ -34,6 +43,8 @@ public class TestEasyJDBC {
     private FriendRepository friendRepository;
     @Autowired
     private RepositoryInit repositoryInit;
+    @Autowired
+    private JdbcTemplate jdbc;
 
     @BeforeEach
     public void setup() {
@@ -69,6 +80,24 @@ public class TestEasyJDBC {
         Assertions.assertNull(device);
     }
 
+    @Test
+    public void fastResultSetExtractorTest() {
+        User user = new User(-1, "extractorUser", "password", "firstname", "lastname", "01234", (byte) 0,
+                new String[]{"extractor@example.com"}, "Test Address", null, null, true, 0, 0.0, new Long[]{1L, 2L});
+        user = usersRepository.save(user);
+
+        FastResultSetExtractor<User> extractor = new FastResultSetExtractor<>(User.class, 15);
+        List<User> users = jdbc.query("SELECT * FROM USERS WHERE USER_ID=?", extractor, user.userId());
+        assertEquals(1, users.size());
+        assertEquals(user.username(), users.get(0).username());
+        Assertions.assertArrayEquals(user.email(), users.get(0).email());
+        Assertions.assertArrayEquals(user.deviceIds(), users.get(0).deviceIds());
+
+        // Column layout is checked against the mapped class
+        Assertions.assertThrows(IncorrectResultSetColumnCountException.class,
+                () -> jdbc.query("SELECT USER_ID FROM USERS", extractor));
+    }
+
     @Test
     public void testGetUserIdsAndUsernames() {
         // Add multiple users
@@ -87,6 +116,14 @@ public class TestEasyJDBC {
         Set<Long> actualIds = new HashSet<>(userIds);
         assertTrue(actualIds.containsAll(expectedIds));
 
+        // Test getUserIdArray
+        long[] userIdArray = usersRepository.getUserIdArray();
+        assertEquals(userIds.size(), userIdArray.length);
+        Set<Long> actualArrayIds = new HashSet<>();
+        for (long id : userIdArray)
+            actualArrayIds.add(id);
+        assertTrue(actualArrayIds.containsAll(expectedIds));
+
         // Test getUsernames
         List<String> usernames = usersRepository.getUsernames();
         assertNotNull(usernames);
@@ -95,6 +132,345 @@ public class TestEasyJDBC {
         assertTrue(actualUsernames.containsAll(expectedUsernames));
     }
 
+    @Test
+    public void testStreamUsers() {
+        User user1 = new User(-1, "streamUser1", "pass1", "f1", "l1", "111", (byte) 0, new String[]{"s1@e.com"}, "a1", null, null, true, 0, 0.0, null);
+        User user2 = new User(-1, "streamUser2", "pass2", "f2", "l2", "222", (byte) 0, new String[]{"s2@e.com"}, "a2", null, null, false, 0, 0.0, null);
+        user1 = usersRepository.save(user1);
+        user2 = usersRepository.save(user2);
+
+        try (Stream<User> users = usersRepository.streamUsers()) {
+            Set<Long> ids = users.map(User::userId).collect(Collectors.toSet());
+            assertTrue(ids.contains(user1.userId()));
+            assertTrue(ids.contains(user2.userId()));
+        }
+
+        try (Stream<User> users = usersRepository.streamUsersByActive(false)) {
+            Set<Long> ids = users.map(User::userId).collect(Collectors.toSet());
+            Assertions.assertFalse(ids.contains(user1.userId()));
+            assertTrue(ids.contains(user2.userId()));
+        }
+
+        try (Stream<String> usernames = usersRepository.streamUsernames()) {
+            Set<String> actualUsernames = usernames.collect(Collectors.toSet());
+            assertTrue(actualUsernames.containsAll(List.of("streamUser1", "streamUser2")));
+        }
+    }
+
+    @Test
+    public void testPrimitiveArrayReturn() {
+        // More rows than the initial buffer capacity
+        for (int i = 0; i < 20; i++) {
+            usersRepository.save(new User(-1, "arrayUser" + i, "pass", "f", "l", "arr" + i, (byte) 0,
+                    new String[]{"arr" + i + "@e.com"}, "addr", null, null, true, 7777, 0.0, null));
+        }
+
+        int[] loginCounts = usersRepository.getLoginCountsByActive(true);
+        assertEquals(20, Arrays.stream(loginCounts).filter(count -> count == 7777).count());
+    }
+
+    @Test
+    public void testKeysetPagination() {
+        int[] loginCounts = {3, 1, 2, 2, 5, 1, 4};
+        double[] balances = {1.0, 2.0, 3.0, 1.0, 5.0, 1.0, 2.0};
+        for (int i = 0; i < loginCounts.length; i++) {
+            usersRepository.save(new User(-1, "keysetUser" + i, "pass", "f", "l", "key" + i, (byte) 0,
+                    new String[]{"key" + i + "@e.com"}, "keysetAddress", null, null, true, loginCounts[i], balances[i], null));
+        }
+
+        // Uniform direction, paged by KeysetPage
+        List<User> ascending = new ArrayList<>();
+        KeysetPage<User> page = usersRepository.getUsersPageByAddress("keysetAddress", null);
+        ascending.addAll(page.content());
+        while (page.hasNext()) {
+            page = usersRepository.getUsersPageByAddress("keysetAddress", page.next());
+            ascending.addAll(page.content());
+        }
+        assertEquals(loginCounts.length, ascending.size());
+        assertEquals(loginCounts.length, ascending.stream().map(User::userId).distinct().count());
+        for (int i = 1; i < ascending.size(); i++) {
+            User prev = ascending.get(i - 1), curr = ascending.get(i);
+            assertTrue(prev.loginCount() < curr.loginCount() ||
+                    prev.loginCount() == curr.loginCount() && prev.userId() < curr.userId());
+        }
+
+        // Mixed direction, paged by last row of List
+        List<User> mixed = new ArrayList<>();
+        List<User> rows = usersRepository.getUsersAfterByAddress("keysetAddress", null, 3);
+        while (!rows.isEmpty()) {
+            mixed.addAll(rows);
+            rows = usersRepository.getUsersAfterByAddress("keysetAddress", rows.get(rows.size() - 1), 3);
+        }
+        assertEquals(loginCounts.length, mixed.size());
+        assertEquals(loginCounts.length, mixed.stream().map(User::userId).distinct().count());
+        for (int i = 1; i < mixed.size(); i++) {
+            User prev = mixed.get(i - 1), curr = mixed.get(i);
+            assertTrue(prev.loginCount() > curr.loginCount() ||
+                    prev.loginCount() == curr.loginCount() && prev.accountBalance() <= curr.accountBalance());
+        }
+    }
+
+    @Test
+    public void testLimitOffsetParameter() {
+        for (int i = 0; i < 5; i++) {
+            usersRepository.save(new User(-1, "pageUser" + i, "pass", "f", "l", "page" + i, (byte) 0,
+                    new String[]{"page" + i + "@e.com"}, "pageAddress", null, null, true, 0, 0.0, null));
+        }
+
+        List<User> users = usersRepository.getUsersByAddress("pageAddress", 2, 1);
+        assertEquals(List.of("pageUser1", "pageUser2"), users.stream().map(User::username).toList());
+
+        users = usersRepository.getUsersByAddress("pageAddress", 10, 4);
+        assertEquals(List.of("pageUser4"), users.stream().map(User::username).toList());
+
+        List<String> usernames = usersRepository.getUsernamesByAddress("pageAddress", 3);
+        assertEquals(List.of("pageUser0", "pageUser1", "pageUser2"), usernames);
+    }
+
+    @Test
+    public void testMultiValueParameter() {
+        User user = usersRepository.save(new User(-1, "multiValueUser", "pass", "f", "l", "mv", (byte) 0,
+                new String[]{"mv@e.com"}, "addr", null, null, true, 0, 0.0, null));
+        long[] ids = new long[3];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = deviceRepository.addDevice(new Device(1000 + i, user.userId(), "multiValueDevice" + i, 1.2,
+                    "SN", "TestModel", "TestManufacturer", null, null, true, 1, "Test device")).id();
+        }
+
+        List<Device> devices = deviceRepository.getDevicesByIds(List.of(ids[0], ids[2], -1L));
+        assertEquals(Set.of(ids[0], ids[2]), devices.stream().map(Device::id).collect(Collectors.toSet()));
+
+        assertEquals(3, deviceRepository.countDevicesByIds(ids));
+        assertEquals(2, deviceRepository.deleteDevicesByIds(new Long[]{ids[0], ids[1]}));
+        assertEquals(1, deviceRepository.countDevicesByIds(ids));
+    }
+
+    @Test
+    public void testProjectionReturn() {
+        User user = usersRepository.save(new User(-1, "projectionUser", "pass", "f", "l", "pj", (byte) 0,
+                new String[]{"pj@e.com"}, "addr", null, null, true, 0, 0.0, null));
+        Device device1 = deviceRepository.addDevice(new Device(2000, user.userId(), "projectionDevice1", 1.2,
+                "SN", "TestModel", "TestManufacturer", null, null, true, 1, "Test device"));
+        Device device2 = deviceRepository.addDevice(new Device(2001, user.userId(), "projectionDevice2", 1.2,
+                "SN", "TestModel", "TestManufacturer", null, null, true, 1, "Test device"));
+
+        DeviceRepository.DeviceName deviceName = deviceRepository.getDeviceNameById(device1.id());
+        assertEquals(new DeviceRepository.DeviceName(device1.id(), "projectionDevice1"), deviceName);
+
+        List<DeviceRepository.DeviceName> deviceNames = deviceRepository.getDeviceNamesByOwnerId(user.userId());
+        assertEquals(Set.of(new DeviceRepository.DeviceName(device1.id(), "projectionDevice1"),
+                        new DeviceRepository.DeviceName(device2.id(), "projectionDevice2")),
+                new HashSet<>(deviceNames));
+    }
+
+    @Test
+    public void testNullableParameter() {
+        User user = usersRepository.save(new User(-1, "nullableUser", "pass", "f", "l", "nu", (byte) 0,
+                new String[]{"nu@e.com"}, "addr", null, null, true, 0, 0.0, null));
+        Device device1 = deviceRepository.addDevice(new Device(3000, user.userId(), "nullableDevice1", 1.2,
+                null, "TestModel", "TestManufacturer", null, null, true, 1, "Test device"));
+        Device device2 = deviceRepository.addDevice(new Device(3001, user.userId(), "nullableDevice2", 1.2,
+                "SN-3001", "TestModel", "TestManufacturer", null, null, true, 1, "Test device"));
+
+        List<Device> devices = deviceRepository.getDevicesByOwnerIdSerialNumber(user.userId(), null);
+        assertEquals(1, devices.size());
+        assertEquals(device1.id(), devices.getFirst().id());
+
+        devices = deviceRepository.getDevicesByOwnerIdSerialNumber(user.userId(), "SN-3001");
+        assertEquals(1, devices.size());
+        assertEquals(device2.id(), devices.getFirst().id());
+    }
+
+    @Test
+    public void testIgnoreCaseParameter() {
+        User user = usersRepository.save(new User(-1, "ignoreCaseUser", "pass", "IgnoreCaseFirst", "l", "ic", (byte) 0,
+                new String[]{"ic@e.com"}, "addr", null, null, true, 0, 0.0, null));
+
+        List<User> users = usersRepository.getUsersByFirstName("IGNORECASEFIRST");
+        assertEquals(1, users.size());
+        assertEquals(user.userId(), users.getFirst().userId());
+        assertEquals(1, usersRepository.getUsersByFirstName("ignorecasefirst").size());
+        assertTrue(usersRepository.getUsersByFirstName(null).isEmpty());
+    }
+
+    @Test
+    public void testUpsert() {
+        assertTrue(usersRepository.upsertUser(new User(-1, "upsertUser", "pass", "first", "l", "up", (byte) 0,
+                new String[]{"up@e.com"}, "upsertAddress", null, null, true, 0, 0.0, null)));
+        User inserted = usersRepository.loadUserByUsername("upsertUser");
+        assertEquals("first", inserted.firstName());
+
+        // Conflict on username updates the row and keeps the id
+        assertTrue(usersRepository.upsertUser(new User(-1, "upsertUser", "pass", "second", "l", "up", (byte) 0,
+                new String[]{"up@e.com"}, "upsertAddress", null, null, true, 0, 0.0, null)));
+        User updated = usersRepository.loadUserByUsername("upsertUser");
+        assertEquals(inserted.userId(), updated.userId());
+        assertEquals("second", updated.firstName());
+
+        assertEquals(2, usersRepository.upsertUsers(List.of(
+                new User(-1, "upsertUser", "pass", "third", "l", "up", (byte) 0,
+                        new String[]{"up@e.com"}, "upsertAddress", null, null, true, 0, 0.0, null),
+                new User(-1, "upsertUser2", "pass", "first", "l", "up2", (byte) 0,
+                        new String[]{"up2@e.com"}, "upsertAddress", null, null, true, 0, 0.0, null))));
+        assertEquals("third", usersRepository.loadUserByUsername("upsertUser").firstName());
+        assertEquals("first", usersRepository.loadUserByUsername("upsertUser2").firstName());
+    }
+
+    @Test
+    public void testBatchUpdateAndDelete() {
+        User user = usersRepository.save(new User(-1, "batchModifyUser", "pass", "f", "l", "bm", (byte) 0,
+                new String[]{"bm@e.com"}, "addr", null, null, true, 0, 0.0, null));
+        List<Device> devices = new ArrayList<>();
+        for (int i = 0; i < 3; i++)
+            devices.add(deviceRepository.addDevice(new Device(4000 + i, user.userId(), "batchDevice" + i, 1.2,
+                    null, "TestModel", "TestManufacturer", null, null, true, 1, "Test device")));
+
+        List<Device> renamed = new ArrayList<>();
+        for (Device device : devices)
+            renamed.add(new Device(device.id(), device.ownerId(), device.name() + "Renamed", device.numeric(),
+                    device.serialNumber(), device.model(), device.manufacturer(), device.creationDate(),
+                    device.lastUpdateDate(), device.active(), 2, device.description()));
+        assertEquals(3, deviceRepository.updateDevices(renamed));
+        Device updated = deviceRepository.getDeviceById(devices.get(1).id());
+        assertEquals("batchDevice1Renamed", updated.name());
+        assertEquals(2, updated.firmwareVersion());
+
+        assertEquals(2, deviceRepository.deleteDevices(renamed.subList(0, 2)));
+        Assertions.assertNull(deviceRepository.getDeviceById(devices.get(0).id()));
+        assertNotNull(deviceRepository.getDeviceById(devices.get(2).id()));
+    }
+
+    @Test
+    public void testMultiRowBatchInsert() {
+        User user = usersRepository.save(new User(-1, "multiRowUser", "pass", "f", "l", "mr", (byte) 0,
+                new String[]{"mr@e.com"}, "addr", null, null, true, 0, 0.0, null));
+        // 128 + 16 + 6 * 1 rows
+        List<Device> devices = new ArrayList<>();
+        for (int i = 0; i < 150; i++)
+            devices.add(new Device(-1, user.userId(), "multiRowDevice" + i, 1.2,
+                    null, "TestModel", "TestManufacturer", null, null, true, 1, "Test device"));
+        assertEquals(150, deviceRepository.addDevice(devices));
+        assertEquals(150, deviceRepository.getDeviceNamesByOwnerId(user.userId()).size());
+    }
+
+    @Test
+    public void testParallelBatchInsert() {
+        User user = usersRepository.save(new User(-1, "parallelUser", "pass", "f", "l", "pb", (byte) 0,
+                new String[]{"pb@e.com"}, "addr", null, null, true, 0, 0.0, null));
+        List<Device> devices = new ArrayList<>();
+        for (int i = 0; i < 1000; i++)
+            devices.add(new Device(-1, user.userId(), "parallelDevice" + i, 1.2,
+                    null, "TestModel", "TestManufacturer", null, null, true, 1, "Test device"));
+        assertEquals(1000, deviceRepository.importDevices(devices));
+        assertEquals(1000, deviceRepository.getDeviceNamesByOwnerId(user.userId()).size());
+
+        // Null name in the last partition fails the whole import
+        User failUser = usersRepository.save(new User(-1, "parallelFailUser", "pass", "f", "l", "pf", (byte) 0,
+                new String[]{"pf@e.com"}, "addr", null, null, true, 0, 0.0, null));
+        List<Device> failDevices = new ArrayList<>();
+        for (int i = 0; i < 1000; i++)
+            failDevices.add(new Device(-1, failUser.userId(), i == 999 ? null : "parallelDevice" + i, 1.2,
+                    null, "TestModel", "TestManufacturer", null, null, true, 1, "Test device"));
+        Assertions.assertThrows(DataAccessException.class, () -> deviceRepository.importDevices(failDevices));
+        assertEquals(0, deviceRepository.getDeviceNamesByOwnerId(failUser.userId()).size());
+
+        // Other partitions are kept when committed per partition
+        Assertions.assertThrows(DataAccessException.class, () -> deviceRepository.importDevicesPerPartition(failDevices));
+        assertEquals(750, deviceRepository.getDeviceNamesByOwnerId(failUser.userId()).size());
+    }
+
+    @Test
+    public void testCompletableFuture() {
+        User user = usersRepository.save(new User(-1, "asyncUser", "pass", "f", "l", "as", (byte) 0,
+                new String[]{"as@e.com"}, "addr", null, null, true, 0, 0.0, null));
+        Device device = deviceRepository.addDevice(new Device(-1, user.userId(), "asyncDevice", 1.2,
+                null, "TestModel", "TestManufacturer", null, null, true, 1, "Test device"));
+
+        CompletableFuture<Device> found = deviceRepository.findDeviceById(device.id());
+        CompletableFuture<List<Device>> owned = deviceRepository.findDevicesByOwnerId(user.userId());
+        CompletableFuture<Integer> count = deviceRepository.countAsync();
+        assertEquals("asyncDevice", found.join().name());
+        assertEquals(1, owned.join().size());
+        assertEquals(deviceRepository.count(), count.join());
+
+        deviceRepository.deleteDeviceByIdAsync(device.id()).join();
+        Assertions.assertNull(deviceRepository.findDeviceById(device.id()).join());
+    }
+
+    @Test
+    public void testSnowflakeNextIds() {
+        Snowflake snowflake = new Snowflake(1, 1704067200000L);
+        long before = snowflake.nextId();
+        // More than one millisecond of sequences
+        long[] ids = snowflake.nextIds(10000);
+        assertEquals(10000, ids.length);
+        assertTrue(ids[0] > before);
+        for (int i = 1; i < ids.length; i++)
+            assertTrue(ids[i] > ids[i - 1]);
+        assertTrue(snowflake.nextId() > ids[ids.length - 1]);
+    }
+
+    @Test
+    public void testSnowflakeDriftBudget() {
+        long[] clock = {System.currentTimeMillis() + 1000};
+        Snowflake snowflake = new Snowflake(1, 1704067200000L) {
+            @Override
+            protected long currentTimeMillis() {
+                return clock[0];
+            }
+        };
+        snowflake.setDriftBudgetMillis(10);
+        long before = snowflake.nextId();
+
+        // Clock moves backwards within budget, ids continue from logical clock
+        clock[0] -= 5;
+        long id = snowflake.nextId();
+        assertTrue(id > before);
+        assertEquals(5, snowflake.getDriftMillis());
+
+        // Sequence runs out, next milliseconds are borrowed instead of waiting
+        long[] ids = snowflake.nextIds(3 * 4096);
+        assertTrue(ids[0] > id);
+        for (int i = 1; i < ids.length; i++)
+            assertTrue(ids[i] > ids[i - 1]);
+        assertEquals(3, snowflake.getSequenceExhaustedCount());
+        assertEquals(8, snowflake.getMaxDriftMillis());
+        assertEquals(0, snowflake.getDriftBudgetExceededCount());
+    }
+
+    @Test
+    public void testIndexCreated() {
+        List<String> indexNames = jdbc.queryForList(
+                "SELECT LOWER(INDEX_NAME) FROM INFORMATION_SCHEMA.INDEXES WHERE LOWER(TABLE_NAME)='device'", String.class);
+        assertTrue(indexNames.contains("device_name_str_idx"), indexNames.toString());
+        assertTrue(indexNames.contains("device_owner_created_idx"), indexNames.toString());
+    }
+
+    @Test
+    public void testRowConsumer() {
+        User user1 = new User(-1, "consumerUser1", "pass1", "f1", "l1", "111", (byte) 0, new String[]{"c1@e.com"}, "a1", null, null, true, 0, 0.0, null);
+        User user2 = new User(-1, "consumerUser2", "pass2", "f2", "l2", "222", (byte) 0, new String[]{"c2@e.com"}, "a2", null, null, false, 0, 0.0, null);
+        user1 = usersRepository.save(user1);
+        user2 = usersRepository.save(user2);
+
+        Set<Long> ids = new HashSet<>();
+        usersRepository.forEachUserId(ids::add);
+        assertTrue(ids.containsAll(List.of(user1.userId(), user2.userId())));
+
+        Set<String> usernames = new HashSet<>();
+        usersRepository.forEachUsernameByActive(false, usernames::add);
+        assertTrue(usernames.contains("consumerUser2"));
+        Assertions.assertFalse(usernames.contains("consumerUser1"));
+
+        Device device = new Device(456, user1.userId(), "consumerDevice", 1.2,
+                "SN456", "TestModel", "TestManufacturer", null, null, true, 1, "Test device");
+        device = deviceRepository.addDevice(device);
+        List<Device> devices = new ArrayList<>();
+        deviceRepository.forEachDeviceByName("consumerDevice", devices::add);
+        assertEquals(1, devices.size());
+        assertEquals(device.id(), devices.get(0).id());
+    }
+
     @Test
     public void testGetEmailsAndDeviceIds() {
         String[] emails = {"test1@example.com", "test2@example.com"};
@@ -164,7 +540,9 @@ public class TestEasyJDBC {
         assertTrue(requests.contains(id1));
 
         // 4. Accept friend request
-        friendRepository.setAcceptState(id1, id2, true);
+        Friend accepted = friendRepository.setAcceptState(id1, id2, true);
+        assertNotNull(accepted);
+        assertEquals(true, accepted.accept());
         assertTrue(friendRepository.isFriend(id1, id2));
         assertTrue(friendRepository.isFriend(id2, id1)); // Symmetric check
         assertEquals(true, friendRepository.getAcceptState(id1, id2));
@@ -0,0 +1,61 @@
+package com.wavjaby;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Check the index advisor report written while compiling the test repositories.
+ */
+public class TestIndexAdvisor {
+    private static final Path REPORT = Path.of("build/generated/sources/annotationProcessor/java/main/com/wavjaby/jdbc/util/index-advisor.json");
+    private static final Pattern DEVICE_METHOD = Pattern.compile("\"repository\": \"com\\.wavjaby\\.db\\.DeviceRepository\", \"method\": \"(\\w+)\"");
+
+    private static final Set<String> flagged = new HashSet<>();
+
+    @BeforeAll
+    public static void readReport() throws IOException {
+        Matcher matcher = DEVICE_METHOD.matcher(Files.readString(REPORT));
+        while (matcher.find())
+            flagged.add(matcher.group(1));
+    }
+
+    @Test
+    public void equalityColumnsNotCoveredByOneIndex() {
+        // Owner index and serial number index each cover only one of the columns
+        assertTrue(flagged.contains("getDevicesByOwnerIdSerialNumber"));
+    }
+
+    @Test
+    public void equalityColumnsCoveredByIndexPrefix() {
+        // Parameter order differs from index (ownerId, creationDate DESC)
+        assertFalse(flagged.contains("getDevicesByCreationDateOwnerId"));
+    }
+
+    @Test
+    public void uniqueIndexCoveredByEqualityColumns() {
+        assertFalse(flagged.contains("getDeviceByIdName"));
+    }
+
+    @Test
+    public void orderFollowsEqualityPrefix() {
+        assertFalse(flagged.contains("getLatestDevicesByOwnerId"));
+        // Backward scan of the index
+        assertFalse(flagged.contains("getOldestDevicesByOwnerId"));
+    }
+
+    @Test
+    public void orderNotFollowingEqualityPrefix() {
+        assertTrue(flagged.contains("getDevicesByOwnerIdOrderByName"));
+    }
+}
@@ -0,0 +1,25 @@
+package com.wavjaby.jdbc.annotation;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+@Target({ElementType.METHOD})
+@Retention(RetentionPolicy.SOURCE)
+public @interface Batch {
+    // Rows per multi-row INSERT statement, remaining rows use smaller statement shapes.
+    // 1 sends plain single row inserts, only batchSize and parallelism apply
+    int rowsPerStatement() default 128;
+
+    // Rows sent to the database per JDBC batch
+    int batchSize() default 1000;
+
+    // Partitions written concurrently, each on its own connection and virtual thread.
+    // Partition transactions are not part of the caller transaction, a caller rollback does not undo committed partitions
+    int parallelism() default 1;
+
+    // Commit all partitions together or roll back all when one fails, otherwise each partition commits on its own.
+    // Written partitions wait for the others at most 5 minutes, then all are rolled back
+    boolean atomic() default true;
+}
@@ -0,0 +1,25 @@
+package com.wavjaby.jdbc.annotation;
+
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+@Target({})
+@Retention(RetentionPolicy.SOURCE)
+public @interface Index {
+    String name() default "";
+
+    // Name with optional " ASC" or " DESC" suffix
+    String[] columnNames() default {};
+
+    // Name with optional " ASC" or " DESC" suffix
+    String[] fieldNames() default {};
+
+    boolean unique() default false;
+
+    // Partial index condition
+    String where() default "";
+
+    // Covering index field names
+    String[] include() default {};
+}
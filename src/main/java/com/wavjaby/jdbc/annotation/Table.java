@@ -22,6 +22,5 @@ public @interface Table {
 
     UniqueConstraint[] uniqueConstraints() default {};
 
-    
-//    Index[] indexes() default {};
+    Index[] indexes() default {};
 }
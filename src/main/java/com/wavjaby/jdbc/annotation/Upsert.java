@@ -0,0 +1,13 @@
+package com.wavjaby.jdbc.annotation;
+
+import java.lang.annotation.ElementType;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.lang.annotation.Target;
+
+@Target({ElementType.METHOD})
+@Retention(RetentionPolicy.SOURCE)
+public @interface Upsert {
+    // Conflict target, must match the primary key or a unique key. Use primary key if empty
+    String[] fieldNames() default {};
+}
@@ -4,17 +4,26 @@ import com.google.auto.service.AutoService;
 import com.squareup.javapoet.*;
 import com.wavjaby.jdbc.annotation.Table;
 import com.wavjaby.jdbc.processor.model.*;
+import com.wavjaby.jdbc.processor.util.IndexAdvisor;
 import com.wavjaby.jdbc.processor.util.JdbcCodeGenerator;
 import com.wavjaby.jdbc.processor.util.ProcessorUtil;
+import com.wavjaby.jdbc.processor.util.SqlDialect;
 import com.wavjaby.jdbc.processor.util.SqlGenerator;
-import com.wavjaby.jdbc.util.FastResultSetExtractor;
+import com.wavjaby.jdbc.util.AsyncExecutor;
+import com.wavjaby.jdbc.util.ParallelBatch;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.boot.context.event.ApplicationReadyEvent;
 import org.springframework.context.ApplicationListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
 import org.springframework.stereotype.Component;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.PlatformTransactionManager;
 
 import javax.annotation.processing.*;
 import javax.lang.model.SourceVersion;
@@ -24,8 +33,15 @@ import javax.lang.model.element.Modifier;
 import javax.lang.model.element.TypeElement;
 import javax.lang.model.type.*;
 import javax.lang.model.util.Elements;
+import javax.lang.model.util.Types;
 import java.io.IOException;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.stream.Collectors;
 
 import static com.wavjaby.jdbc.processor.util.AnnotationHelper.getAnnotationMirror;
 import static com.wavjaby.jdbc.processor.util.AnnotationHelper.getAnnotationValueClassElement;
@@ -35,11 +51,19 @@ import static javax.tools.Diagnostic.Kind.ERROR;
 @AutoService(Processor.class)
 @SupportedSourceVersion(SourceVersion.RELEASE_21)
 @SupportedAnnotationTypes("com.wavjaby.jdbc.annotation.Table")
+@SupportedOptions({IndexAdvisor.OPTION, SqlDialect.OPTION})
 @SuppressWarnings("unused")
 public class TableProcessor extends AbstractProcessor {
+    // PostgreSQL bind parameter limit of a statement
+    private static final int MAX_STATEMENT_PARAMETERS = 65535;
+    // Executor bean used by CompletableFuture methods, shared virtual thread per task executor if not defined.
+    // Method bodies run on the executor thread, outside the transaction of the caller
+    public static final String ASYNC_EXECUTOR_BEAN = "easyJdbcAsyncExecutor";
     private Messager console;
     private static Elements elementUtils;
+    private static Types typeUtils;
     private Filer filer;
+    private SqlDialect dialect;
 
     @SuppressWarnings("unused")
     public TableProcessor() {
@@ -49,19 +73,25 @@ public class TableProcessor extends AbstractProcessor {
     public synchronized void init(ProcessingEnvironment processingEnv) {
         super.init(processingEnv);
         elementUtils = processingEnv.getElementUtils();
+        typeUtils = processingEnv.getTypeUtils();
         this.console = processingEnv.getMessager();
         this.filer = processingEnv.getFiler();
+        this.dialect = SqlDialect.fromOption(processingEnv.getOptions().get(SqlDialect.OPTION), console);
     }
 
     public static Elements getElementUtils() {
         return elementUtils;
     }
 
+    public static Types getTypeUtils() {
+        return typeUtils;
+    }
+
     @Override
     public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
         try {
 
-            if (annotations.isEmpty())
+            if (annotations.isEmpty() || dialect == null)
                 return false;
 
             Map<String, TableData> tableDataMap = new HashMap<>();
@@ -92,6 +122,14 @@ public class TableProcessor extends AbstractProcessor {
             if (generateInitFile(tableDataMap, tableDependency))
                 return false;
 
+            // Report query without supporting index
+            if (IndexAdvisor.isEnabled(processingEnv.getOptions().get(IndexAdvisor.OPTION))) {
+                IndexAdvisor indexAdvisor = new IndexAdvisor();
+                indexAdvisor.analyze(tableDataMap.values());
+                indexAdvisor.printWarnings(console);
+                indexAdvisor.writeReport(filer, console);
+            }
+
             if (ProcessorUtil.copyUtilityClasses(processingEnv, console))
                 return false;
 
@@ -212,6 +250,33 @@ public class TableProcessor extends AbstractProcessor {
             initSchemeAndTable.addStatement("jdbc.execute(\"\"\"\n$L\"\"\")", tableCreateSql);
         }
 
+        // Create index SQL
+        for (TableData tableData : tables) {
+            for (TableData.IndexGroup index : tableData.indexList) {
+                StringBuilder indexCreateSql = new StringBuilder();
+                SqlGenerator.generateCreateIndexSql(tableData, index, indexCreateSql);
+                // Partial and covering index are not supported by every database
+                if (index.where() != null || !index.include().isEmpty()) {
+                    initSchemeAndTable.beginControlFlow("try");
+                    initSchemeAndTable.addStatement("jdbc.execute($S)", indexCreateSql);
+                    initSchemeAndTable.nextControlFlow("catch ($T e)", DataAccessException.class);
+                    initSchemeAndTable.addStatement("logger.warn($S, e.getMessage())", "Skip index " + index.name() + ": {}");
+                    initSchemeAndTable.endControlFlow();
+                } else
+                    initSchemeAndTable.addStatement("jdbc.execute($S)", indexCreateSql);
+            }
+            // Expression index for ignore case query, not supported by every database
+            for (ColumnInfo column : tableData.ignoreCaseColumns) {
+                StringBuilder indexCreateSql = new StringBuilder();
+                SqlGenerator.generateCreateLowerIndexSql(tableData, column, indexCreateSql);
+                initSchemeAndTable.beginControlFlow("try");
+                initSchemeAndTable.addStatement("jdbc.execute($S)", indexCreateSql);
+                initSchemeAndTable.nextControlFlow("catch ($T e)", DataAccessException.class);
+                initSchemeAndTable.addStatement("logger.warn($S, e.getMessage())", "Skip index " + tableData.tableInfo.getLowerIndexName(column) + ": {}");
+                initSchemeAndTable.endControlFlow();
+            }
+        }
+
         MethodSpec onApplicationEvent = MethodSpec.methodBuilder("onApplicationEvent")
                 .addAnnotation(Override.class)
                 .addModifiers(Modifier.PUBLIC)
@@ -255,6 +320,11 @@ public class TableProcessor extends AbstractProcessor {
         // Create class Builder
         ClassName repoClassName = ClassName.get(tableInfo.classPackagePath, tableInfo.repoClassName);
         ClassName tableDataClass = ClassName.get(tableInfo.classPackagePath, tableInfo.className);
+        ClassName tableMapperClass = ClassName.get(tableInfo.classPackagePath, tableInfo.className + "RowMapper");
+
+        // Create typed row mapper for table class
+        if (generateRowMapperFile(tableData, tableMapperClass, tableDataClass))
+            return true;
 
         TypeSpec.Builder typeBuilder = TypeSpec.classBuilder(repoClassName)
                 .addModifiers(Modifier.PUBLIC)
@@ -266,11 +336,8 @@ public class TableProcessor extends AbstractProcessor {
                 .addModifiers(Modifier.PRIVATE, Modifier.FINAL)
                 .build());
 
-        // FastResultSetExtractor field
-        ParameterizedTypeName tableMapperType = ParameterizedTypeName.get(
-                ClassName.get(FastResultSetExtractor.class),
-                tableDataClass);
-        typeBuilder.addField(FieldSpec.builder(tableMapperType, "tableMapper")
+        // Table row mapper field
+        typeBuilder.addField(FieldSpec.builder(tableMapperClass, "tableMapper")
                 .addModifiers(Modifier.PRIVATE, Modifier.FINAL)
                 .build());
 
@@ -283,11 +350,45 @@ public class TableProcessor extends AbstractProcessor {
         // Add repository dependency
         generateClassDependencies(tableInfo, tableData, typeBuilder, constructorBuilder);
 
+        // Executor of CompletableFuture methods
+        if (tableData.interfaceMethodInfo.stream().anyMatch(i -> i.asyncReturnType != null)) {
+            typeBuilder.addField(FieldSpec.builder(Executor.class, "asyncExecutor")
+                    .addModifiers(Modifier.PRIVATE, Modifier.FINAL)
+                    .build());
+            constructorBuilder.addParameter(ParameterSpec.builder(ParameterizedTypeName.get(ObjectProvider.class, Executor.class), "asyncExecutor")
+                    .addAnnotation(AnnotationSpec.builder(Qualifier.class).addMember("value", "$S", ASYNC_EXECUTOR_BEAN).build())
+                    .build());
+            constructorBuilder.addStatement("this.asyncExecutor = asyncExecutor.getIfAvailable($T::shared)", AsyncExecutor.class);
+        }
+
+        // Transaction manager of parallel batch partitions, the context manager if unique
+        if (tableData.interfaceMethodInfo.stream().anyMatch(i -> i.parallelism > 1)) {
+            typeBuilder.addField(FieldSpec.builder(PlatformTransactionManager.class, "transactionManager")
+                    .addModifiers(Modifier.PRIVATE, Modifier.FINAL)
+                    .build());
+            constructorBuilder.addParameter(ParameterizedTypeName.get(ObjectProvider.class, PlatformTransactionManager.class), "transactionManager");
+            constructorBuilder.addStatement("this.transactionManager = transactionManager.getIfUnique(() -> new $T(jdbc.getDataSource()))",
+                    DataSourceTransactionManager.class);
+        }
+
         // Finish constructor
-        constructorBuilder.addStatement("tableMapper = new $T<>($T.class, $L)",
-                FastResultSetExtractor.class,
-                tableDataClass,
-                tableData.tableColumns.size());
+        constructorBuilder.addStatement("tableMapper = new $T()", tableMapperClass);
+
+        // Projection record row mappers
+        Set<String> projectionMappers = new HashSet<>();
+        for (MethodInfo method : tableData.interfaceMethodInfo) {
+            MethodInfo.Projection projection = method.returns.projection();
+            if (projection == null || !projectionMappers.add(projection.type().getQualifiedName().toString()))
+                continue;
+            ClassName projectionMapperClass = JdbcCodeGenerator.getProjectionMapperClass(repoClassName, projection);
+            typeBuilder.addType(JdbcCodeGenerator.buildRowMapper(projectionMapperClass, ClassName.get(projection.type()), projection.columns())
+                    .addModifiers(Modifier.PRIVATE, Modifier.STATIC, Modifier.FINAL)
+                    .build());
+            typeBuilder.addField(FieldSpec.builder(projectionMapperClass, JdbcCodeGenerator.getProjectionMapperName(tableInfo.classPackagePath, projection))
+                    .addModifiers(Modifier.PRIVATE, Modifier.FINAL)
+                    .initializer("new $T()", projectionMapperClass)
+                    .build());
+        }
 
         typeBuilder.addMethod(constructorBuilder.build());
 
@@ -306,113 +407,220 @@ public class TableProcessor extends AbstractProcessor {
         return false;
     }
 
+    private boolean generateRowMapperFile(TableData tableData, ClassName mapperClassName, ClassName tableDataClass) {
+        TypeSpec mapperType = JdbcCodeGenerator.buildRowMapper(mapperClassName, tableDataClass, new ArrayList<>(tableData.tableColumns.values()))
+                .addModifiers(Modifier.PUBLIC, Modifier.FINAL)
+                .build();
+        try {
+            JavaFile.builder(mapperClassName.packageName(), mapperType)
+                    .build()
+                    .writeTo(filer);
+        } catch (IOException e) {
+            console.printMessage(ERROR, "Could not write class: '" + mapperClassName.canonicalName() + "'. Error: " + e);
+            return true;
+        }
+        return false;
+    }
 
     private boolean generateRepositoryMethods(TableData tableData, TypeSpec.Builder typeBuilder) {
-        TableInfo tableInfo = tableData.tableInfo;
         for (MethodInfo method : tableData.interfaceMethodInfo) {
-
-            // Explicit column SQL selection takes highest priority
-            if (method.returns.column().columnSqlParams() != null) {
-                if (generateRepositorySearchColumnMethod(method, tableData, typeBuilder))
+            // Async method body is generated as a blocking method first
+            TypeSpec.Builder methodTypeBuilder = method.asyncReturnType == null
+                    ? typeBuilder
+                    : TypeSpec.classBuilder(tableData.tableInfo.repoClassName);
+            if (method.nullCheckParams.isEmpty()) {
+                if (generateRepositoryMethod(method, tableData, methodTypeBuilder, Set.of()))
                     return true;
-                continue;
-            }
+            } else if (generateNullCheckMethod(method, tableData, methodTypeBuilder))
+                return true;
+            if (method.asyncReturnType != null)
+                generateAsyncMethod(method, methodTypeBuilder, typeBuilder);
+        }
+        return false;
+    }
 
-            if (method.batchInsert) {
-                if (generateRepositoryInsertMethod(method, tableData, typeBuilder))
-                    return true;
-                continue;
+    // Rename the blocking method to <method>Sync and run it on the async executor
+    private void generateAsyncMethod(MethodInfo method, TypeSpec.Builder methodTypeBuilder, TypeSpec.Builder typeBuilder) {
+        String syncMethodName = method.methodName + "Sync";
+        MethodSpec syncMethod = null;
+        for (MethodSpec methodSpec : methodTypeBuilder.methodSpecs) {
+            if (syncMethod == null && methodSpec.name.equals(method.methodName)) {
+                syncMethod = methodSpec;
+                typeBuilder.addMethod(MethodSpec.methodBuilder(syncMethodName)
+                        .addModifiers(Modifier.PRIVATE)
+                        .returns(methodSpec.returnType)
+                        .addParameters(methodSpec.parameters)
+                        .addExceptions(methodSpec.exceptions)
+                        .addCode(methodSpec.code)
+                        .build());
+            } else
+                typeBuilder.addMethod(methodSpec);
+        }
+
+        boolean isVoid = syncMethod.returnType.equals(TypeName.VOID);
+        CodeBlock args = CodeBlock.join(syncMethod.parameters.stream().map(i -> CodeBlock.of("$N", i)).toList(), ", ");
+        CodeBlock call = CodeBlock.of("$L$L($L)", isVoid ? "" : "return ", syncMethodName, args);
+        CodeBlock task;
+        if (syncMethod.exceptions.isEmpty())
+            task = CodeBlock.of("() -> $L($L)", syncMethodName, args);
+        else {
+            // Checked exceptions can not leave the lambda, complete the future exceptionally with them.
+            // Lambda is inside the return statement, so nested lines are added without addStatement
+            task = CodeBlock.builder()
+                    .add("() -> {\n").indent()
+                    .add("try {\n").indent()
+                    .add("$L;\n", call)
+                    .unindent().add("} catch ($T | $T e) {\n", RuntimeException.class, Error.class).indent()
+                    .add("throw e;\n")
+                    .unindent().add("} catch ($T e) {\n", Throwable.class).indent()
+                    .add("throw new $T(e);\n", CompletionException.class)
+                    .unindent().add("}\n")
+                    .unindent().add("}")
+                    .build();
+        }
+        typeBuilder.addMethod(MethodSpec.methodBuilder(method.methodName)
+                .addAnnotation(Override.class)
+                .addModifiers(Modifier.PUBLIC)
+                .returns(TypeName.get(method.asyncReturnType))
+                .addParameters(syncMethod.parameters)
+                .addStatement("return $T.$L($L, asyncExecutor)", CompletableFuture.class,
+                        isVoid ? "runAsync" : "supplyAsync", task)
+                .build());
+    }
+
+    // Generate a code branch for each null argument combination, so the query can use col=? or col IS NULL
+    private boolean generateNullCheckMethod(MethodInfo method, TableData tableData, TypeSpec.Builder typeBuilder) {
+        MethodSpec.Builder methodBuilder = JdbcCodeGenerator.getClassDefinition(method);
+        List<MethodParamInfo> nullCheckParams = method.nullCheckParams;
+        int branchCount = 1 << nullCheckParams.size();
+        for (int i = 0; i < branchCount; i++) {
+            List<CodeBlock> conditions = new ArrayList<>();
+            Set<MethodParamInfo> nullParams = new HashSet<>();
+            for (int j = 0; j < nullCheckParams.size(); j++) {
+                MethodParamInfo param = nullCheckParams.get(j);
+                boolean nullValue = (i & (1 << j)) != 0;
+                if (nullValue)
+                    nullParams.add(param);
+                conditions.add(CodeBlock.of("$L $L null", param.paramName, nullValue ? "==" : "!="));
             }
 
-            // Delete methods: only applicable for boolean/int/void returns.
-            if (method.delete) {
-                TypeKind kind = method.returnTypeMirror.getKind();
-                if (kind == TypeKind.BOOLEAN || kind == TypeKind.INT || kind == TypeKind.VOID) {
-                    if (generateRepositoryDeleteMethod(method, tableData, typeBuilder))
-                        return true;
-                    continue;
-                }
-                console.printMessage(ERROR, "Unrecognized return type for delete method: " + method.method, method.method);
+            TypeSpec.Builder branchBuilder = TypeSpec.classBuilder(tableData.tableInfo.repoClassName);
+            if (generateRepositoryMethod(method, tableData, branchBuilder, nullParams))
                 return true;
-            }
 
-            // Primitive return types
-            if (method.returnTypeMirror instanceof PrimitiveType primitiveReturnType) {
-                TypeKind kind = primitiveReturnType.getKind();
-                if (kind == TypeKind.BOOLEAN) {
-                    if (method.modifyRow) {
-                        // Update and check success
-                        if (generateRepositoryUpdateMethod(method, tableData, typeBuilder, true))
-                            return true;
-                        continue;
-                    } else {
-                        // Check existence
-                        if (generateRepositoryCheckMethod(method, tableData, typeBuilder))
-                            return true;
-                        continue;
-                    }
-                } else if (kind == TypeKind.INT) {
-                    if (method.count) {
-                        if (generateRepositoryCountMethod(method, tableData, typeBuilder))
-                            return true;
-                        continue;
-                    }
-                }
+            CodeBlock condition = CodeBlock.join(conditions, " && ");
+            if (i == 0)
+                methodBuilder.beginControlFlow("if ($L)", condition);
+            else if (i == branchCount - 1)
+                methodBuilder.nextControlFlow("else");
+            else
+                methodBuilder.nextControlFlow("else if ($L)", condition);
+            methodBuilder.addCode(branchBuilder.methodSpecs.getFirst().code);
+        }
+        methodBuilder.endControlFlow();
+        typeBuilder.addMethod(methodBuilder.build());
+        return false;
+    }
 
-                console.printMessage(ERROR, "Unrecognized return type for " + method.returns.typeName() + " method: " + method.method, method.method);
-                return true;
-            }
+    private boolean generateRepositoryMethod(MethodInfo method, TableData tableData, TypeSpec.Builder typeBuilder, Set<MethodParamInfo> nullParams) {
+        // Explicit column SQL selection takes highest priority
+        if (method.returns.column().columnSqlParams() != null) {
+            return generateRepositorySearchColumnMethod(method, tableData, typeBuilder, nullParams);
+        }
 
-            // Void return type
-            if (method.returnTypeMirror instanceof NoType) {
-                if (method.modifyRow) {
-                    if (generateRepositoryUpdateMethod(method, tableData, typeBuilder, false))
-                        return true;
-                    continue;
-                }
-                else if (method.insertMethod) {
-                    if (generateRepositoryInsertMethod(method, tableData, typeBuilder))
-                        return true;
-                    continue;
-                }
+        if (method.upsertKey != null) {
+            return generateRepositoryUpsertMethod(method, tableData, typeBuilder);
+        }
 
-                console.printMessage(ERROR, "Only insert, update method allow return void, method: " + method.method, method.method);
-                return true;
+        if (method.batchInsert) {
+            return generateRepositoryInsertMethod(method, tableData, typeBuilder);
+        }
+
+        if (method.batchModify) {
+            return generateRepositoryBatchModifyMethod(method, tableData, typeBuilder);
+        }
+
+        // Delete methods: only applicable for boolean/int/void returns.
+        if (method.delete) {
+            TypeKind kind = method.returnTypeMirror.getKind();
+            if (kind == TypeKind.BOOLEAN || kind == TypeKind.INT || kind == TypeKind.VOID) {
+                return generateRepositoryDeleteMethod(method, tableData, typeBuilder, nullParams);
             }
+            console.printMessage(ERROR, "Unrecognized return type for delete method: " + method.method, method.method);
+            return true;
+        }
 
-            // Declared and other return types
-            if (method.returns.table()) {
-                // Update function
+        // Primitive return types
+        if (method.returnTypeMirror instanceof PrimitiveType primitiveReturnType) {
+            TypeKind kind = primitiveReturnType.getKind();
+            if (kind == TypeKind.BOOLEAN) {
                 if (method.modifyRow) {
-                    if (generateRepositoryUpdateMethod(method, tableData, typeBuilder, false))
-                        return true;
-                    continue;
+                    // Update and check success
+                    return generateRepositoryUpdateMethod(method, tableData, typeBuilder, true, nullParams);
+                } else {
+                    // Check existence
+                    return generateRepositoryCheckMethod(method, tableData, typeBuilder, nullParams);
                 }
-                // Insert function
-                else if (method.insertMethod) {
-                    if (generateRepositoryInsertMethod(method, tableData, typeBuilder))
-                        return true;
-                    continue;
+            } else if (kind == TypeKind.INT) {
+                if (method.count) {
+                    return generateRepositoryCountMethod(method, tableData, typeBuilder, nullParams);
                 }
-                // Query function
-                else if (generateRepositorySearchMethod(method, tableData, typeBuilder))
-                    return true;
-                continue;
             }
 
-            // Return a single column
-            if (method.returns.column().column() != null) {
-                if (generateRepositorySearchColumnMethod(method, tableData, typeBuilder))
-                    return true;
-                continue;
+            console.printMessage(ERROR, "Unrecognized return type for " + method.returns.typeName() + " method: " + method.method, method.method);
+            return true;
+        }
+
+        // Void return type
+        if (method.returnTypeMirror instanceof NoType) {
+            if (method.modifyRow) {
+                return generateRepositoryUpdateMethod(method, tableData, typeBuilder, false, nullParams);
+            }
+            else if (method.insertMethod) {
+                return generateRepositoryInsertMethod(method, tableData, typeBuilder);
+            }
+            // Query with row consumer
+            else if (method.rowConsumer != null) {
+                return method.returns.column().isNull()
+                        ? generateRepositorySearchMethod(method, tableData, typeBuilder, nullParams)
+                        : generateRepositorySearchColumnMethod(method, tableData, typeBuilder, nullParams);
             }
 
-            console.printMessage(ERROR, "Unrecognized repository method configuration: " + method.method, method.method);
+            console.printMessage(ERROR, "Only insert, update, row consumer method allow return void, method: " + method.method, method.method);
             return true;
         }
-        return false;
-    }
 
+        // Declared and other return types
+        if (method.returns.table()) {
+            // Update function
+            if (method.modifyRow) {
+                return generateRepositoryUpdateMethod(method, tableData, typeBuilder, false, nullParams);
+            }
+            // Insert function
+            else if (method.insertMethod) {
+                return generateRepositoryInsertMethod(method, tableData, typeBuilder);
+            }
+            // Query function
+            return generateRepositorySearchMethod(method, tableData, typeBuilder, nullParams);
+        }
+
+        // Return projection record
+        if (method.returns.projection() != null) {
+            if (method.modifyRow || method.insertMethod) {
+                console.printMessage(ERROR, "Projection return type can only be used with select method: " + method.method, method.method);
+                return true;
+            }
+            return generateRepositorySearchMethod(method, tableData, typeBuilder, nullParams);
+        }
+
+        // Return a single column
+        if (method.returns.column().column() != null) {
+            return generateRepositorySearchColumnMethod(method, tableData, typeBuilder, nullParams);
+        }
+
+        console.printMessage(ERROR, "Unrecognized repository method configuration: " + method.method, method.method);
+        return true;
+    }
 
     private boolean generateRepositoryInsertMethod(MethodInfo methodInfo, TableData tableData, TypeSpec.Builder typeBuilder) {
         if (methodInfo.returns.list()) {
@@ -427,27 +635,19 @@ public class TableProcessor extends AbstractProcessor {
 
         List<MethodParamInfo> infos = new ArrayList<>(methodInfo.params);
 
-        CodeBlock idGenerator = JdbcCodeGenerator.addIdGenerator(tableData, infos);
+        CodeBlock idGenerator = JdbcCodeGenerator.addIdGenerator(tableData, infos, methodInfo.batchInsert ? "rowIndex" : null);
         CodeBlock enumString = JdbcCodeGenerator.checkAndConvertEnumToStringArray(infos);
 
         JdbcCodeGenerator.QueryAndArgs values = JdbcCodeGenerator.getQueryAndArgs(infos, methodInfo, true, false, null, ",", false, tableData);
 
         if (methodInfo.batchInsert) {
-            MethodParamInfo param = methodInfo.params.get(0);
-            String typeStr = ((DeclaredType) param.parameter.asType()).asElement().getSimpleName().toString();
-
-            methodBuilder.addStatement("$T<Object[]> batchValues = new $T<>($L_.size())",
-                    List.class, ArrayList.class, param.paramName);
-            methodBuilder.beginControlFlow("for ($L $L : $L_)", typeStr, param.paramName, param.paramName);
-            methodBuilder.addCode(idGenerator);
-            methodBuilder.addCode(enumString);
-            methodBuilder.addStatement("batchValues.add(new Object[]{$L})", CodeBlock.join(values.args(), ", "));
-            methodBuilder.endControlFlow();
-
-            methodBuilder.addStatement("int[] result = jdbc.batchUpdate($S, batchValues)", "INSERT INTO " + tableInfo.quotedTableFullName + values.query());
-
-            if (returnInt)
-                methodBuilder.addStatement("return $T.stream(result).sum()", Arrays.class);
+            if (methodInfo.batchShapes != null) {
+                if (buildMultiRowInsert(methodBuilder, methodInfo, tableData, idGenerator, infos))
+                    return true;
+            } else
+                buildBatchUpdate(methodBuilder, methodInfo, tableData, idGenerator, infos, "INSERT INTO " + tableInfo.quotedTableFullName + values.query());
+            if (methodInfo.parallelism > 1)
+                methodBuilder = buildParallelInsert(methodBuilder, methodInfo, typeBuilder);
         } else {
             methodBuilder.addCode(idGenerator);
             methodBuilder.addCode(enumString);
@@ -473,37 +673,178 @@ public class TableProcessor extends AbstractProcessor {
     }
 
 
-    private boolean generateRepositoryCheckMethod(MethodInfo methodInfo, TableData tableData, TypeSpec.Builder typeBuilder) {
+    // Bind each row straight to the statement, one JDBC batch every batch size rows
+    private void buildBatchUpdate(MethodSpec.Builder methodBuilder, MethodInfo methodInfo, TableData tableData, CodeBlock idGenerator, List<MethodParamInfo> infos, String sql) {
+        MethodParamInfo param = methodInfo.params.get(0);
+        TypeName rowType = TypeName.get(param.parameter.asType());
+
+        // Row index in the list selects the reserved id
+        MethodSpec.Builder setValues = MethodSpec.methodBuilder("setValues")
+                .addAnnotation(Override.class)
+                .addModifiers(Modifier.PUBLIC)
+                .addParameter(PreparedStatement.class, "ps")
+                .addParameter(int.class, "i")
+                .addException(SQLException.class)
+                .addStatement("int rowIndex = sliceStart + i")
+                .addStatement("$T $L = $L_.get(rowIndex)", rowType, param.paramName, param.paramName)
+                .addCode(idGenerator)
+                .addCode(JdbcCodeGenerator.checkAndConvertEnumToStringArray(infos))
+                .addCode(JdbcCodeGenerator.buildStatementBindings(infos, null));
+        TypeSpec setter = TypeSpec.anonymousClassBuilder("")
+                .addSuperinterface(BatchPreparedStatementSetter.class)
+                .addMethod(setValues.build())
+                .addMethod(MethodSpec.methodBuilder("getBatchSize")
+                        .addAnnotation(Override.class)
+                        .addModifiers(Modifier.PUBLIC)
+                        .returns(int.class)
+                        .addStatement("return sliceSize")
+                        .build())
+                .build();
+
+        if (!idGenerator.isEmpty())
+            methodBuilder.addCode(JdbcCodeGenerator.reserveIds(tableData, param.paramName + "_.size()"));
+        methodBuilder.addStatement("int total = 0");
+        methodBuilder.beginControlFlow("for (int start = 0; start < $L_.size(); start += $L)", param.paramName, methodInfo.batchSize);
+        methodBuilder.addStatement("int sliceStart = start");
+        methodBuilder.addStatement("int sliceSize = $T.min($L, $L_.size() - start)", Math.class, methodInfo.batchSize, param.paramName);
+        methodBuilder.addStatement("int[] result = jdbc.batchUpdate($S, $L)", sql, setter);
+        methodBuilder.addStatement("total += $T.stream(result).sum()", Arrays.class);
+        methodBuilder.endControlFlow();
+
+        // Parallel partition method always returns the row count
+        if (methodInfo.returnTypeMirror.getKind() == TypeKind.INT || methodInfo.parallelism > 1)
+            methodBuilder.addStatement("return total");
+    }
+
+    private boolean buildMultiRowInsert(MethodSpec.Builder methodBuilder, MethodInfo methodInfo, TableData tableData, CodeBlock idGenerator, List<MethodParamInfo> infos) {
+        List<ColumnInfo> columns = JdbcCodeGenerator.getInsertColumns(infos);
+        int[] shapes = methodInfo.batchShapes;
+        if ((long) shapes[0] * columns.size() > MAX_STATEMENT_PARAMETERS) {
+            console.printMessage(ERROR, "Batch statement exceeds " + MAX_STATEMENT_PARAMETERS + " parameters, reduce rowsPerStatement", methodInfo.method);
+            return true;
+        }
+
+        // INSERT INTO table (cols)VALUES(?,?),(?,?)... for each statement shape
+        String insertSql = "INSERT INTO " + tableData.tableInfo.quotedTableFullName + " (" +
+                columns.stream().map(i -> i.quotedColumnName).collect(Collectors.joining(",")) + ")VALUES";
+        String rowSql = "(" + String.join(",", Collections.nCopies(columns.size(), "?")) + ")";
+        List<CodeBlock> shapeSql = new ArrayList<>();
+        List<CodeBlock> shapeRows = new ArrayList<>();
+        for (int rows : shapes) {
+            shapeSql.add(CodeBlock.of("$S", insertSql + String.join(",", Collections.nCopies(rows, rowSql))));
+            shapeRows.add(CodeBlock.of("$L", rows));
+        }
+
+        MethodParamInfo param = methodInfo.params.get(0);
+        TypeName rowType = TypeName.get(param.parameter.asType());
+
+        methodBuilder.addStatement("int[] shapes = {$L}", CodeBlock.join(shapeRows, ", "));
+        methodBuilder.addStatement("String[] shapeSql = {$L}", CodeBlock.join(shapeSql, ", "));
+        methodBuilder.addStatement("int size = $L_.size()", param.paramName);
+        methodBuilder.addStatement("int start = 0");
+        methodBuilder.addStatement("int total = 0");
+        methodBuilder.beginControlFlow("for (int shape = 0; shape < shapes.length; shape++)");
+        methodBuilder.addStatement("int rows = shapes[shape]");
+        // Chunks are sub list views, rows are not copied
+        methodBuilder.addStatement("$T<$T<$T>> chunks = new $T<>((size - start) / rows)", List.class, List.class, rowType, ArrayList.class);
+        methodBuilder.beginControlFlow("for (; size - start >= rows; start += rows)");
+        methodBuilder.addStatement("chunks.add($L_.subList(start, start + rows))", param.paramName);
+        methodBuilder.endControlFlow();
+        methodBuilder.addStatement("if (chunks.isEmpty()) continue");
+        methodBuilder.addCode("int[][] result = jdbc.batchUpdate(shapeSql[shape], chunks, $T.max(1, $L / rows), (ps, chunk) -> {\n$>", Math.class, methodInfo.batchSize);
+        methodBuilder.addCode(JdbcCodeGenerator.reserveIds(tableData, "chunk.size()"));
+        methodBuilder.addStatement("int offset = 0");
+        if (!idGenerator.isEmpty())
+            methodBuilder.addStatement("int rowIndex = 0");
+        methodBuilder.beginControlFlow("for ($T $L : chunk)", rowType, param.paramName);
+        methodBuilder.addCode(idGenerator);
+        methodBuilder.addCode(JdbcCodeGenerator.checkAndConvertEnumToStringArray(infos));
+        methodBuilder.addCode(JdbcCodeGenerator.buildStatementBindings(infos, "offset"));
+        methodBuilder.addStatement("offset += $L", columns.size());
+        if (!idGenerator.isEmpty())
+            methodBuilder.addStatement("rowIndex++");
+        methodBuilder.endControlFlow();
+        methodBuilder.addCode("$<});\n");
+        methodBuilder.addStatement("total += $T.stream(result).flatMapToInt($T::stream).sum()", Arrays.class, Arrays.class);
+        methodBuilder.endControlFlow();
+        if (methodInfo.returnTypeMirror.getKind() == TypeKind.INT || methodInfo.parallelism > 1)
+            methodBuilder.addStatement("return total");
+        return false;
+    }
+
+    // Move the insert code to a private partition method, the repository method splits rows into partitions
+    private MethodSpec.Builder buildParallelInsert(MethodSpec.Builder methodBuilder, MethodInfo methodInfo, TypeSpec.Builder typeBuilder) {
+        MethodSpec insertMethod = methodBuilder.build();
+        String partitionMethodName = methodInfo.methodName + "Partition";
+        typeBuilder.addMethod(MethodSpec.methodBuilder(partitionMethodName)
+                .addModifiers(Modifier.PRIVATE)
+                .returns(TypeName.INT)
+                .addParameters(insertMethod.parameters)
+                .addCode(insertMethod.code)
+                .build());
+
+        MethodSpec.Builder parallelBuilder = JdbcCodeGenerator.getClassDefinition(methodInfo);
+        parallelBuilder.addStatement("$L$T.write(transactionManager, $L_, $L, $L, $L, this::$L)",
+                methodInfo.returnTypeMirror.getKind() == TypeKind.INT ? "return " : "", ParallelBatch.class,
+                methodInfo.params.get(0).paramName, methodInfo.parallelism, methodInfo.batchSize, methodInfo.parallelAtomic, partitionMethodName);
+        return parallelBuilder;
+    }
+
+    private boolean generateRepositoryUpsertMethod(MethodInfo methodInfo, TableData tableData, TypeSpec.Builder typeBuilder) {
+        MethodSpec.Builder methodBuilder = JdbcCodeGenerator.getClassDefinition(methodInfo);
+
+        List<MethodParamInfo> infos = new ArrayList<>(methodInfo.params);
+
+        CodeBlock idGenerator = JdbcCodeGenerator.addIdGenerator(tableData, infos, methodInfo.batchInsert ? "rowIndex" : null);
+        CodeBlock enumString = JdbcCodeGenerator.checkAndConvertEnumToStringArray(infos);
+
+        JdbcCodeGenerator.QueryAndArgs values = JdbcCodeGenerator.getQueryAndArgs(infos, methodInfo, true, false, null, ",", false, tableData);
+        String sql = SqlGenerator.generateUpsertSql(tableData, JdbcCodeGenerator.getInsertColumns(infos), methodInfo.upsertKey, dialect);
+
+        if (methodInfo.batchInsert) {
+            buildBatchUpdate(methodBuilder, methodInfo, tableData, idGenerator, infos, sql);
+        } else {
+            methodBuilder.addCode(idGenerator);
+            methodBuilder.addCode(enumString);
+            JdbcCodeGenerator.buildJdbcUpdate(methodBuilder, sql, values.args(), methodInfo.returnTypeMirror);
+        }
+
+        typeBuilder.addMethod(methodBuilder.build());
+        return false;
+    }
+
+    private boolean generateRepositoryCheckMethod(MethodInfo methodInfo, TableData tableData, TypeSpec.Builder typeBuilder, Set<MethodParamInfo> nullParams) {
         TableInfo tableInfo = tableData.tableInfo;
 
         MethodSpec.Builder methodBuilder = JdbcCodeGenerator.getClassDefinition(methodInfo);
 
-        JdbcCodeGenerator.QueryAndArgs queryWithArgs = JdbcCodeGenerator.getQueryAndArgs(methodInfo.params, methodInfo, false, false, "WHERE ", " AND ", false, tableData);
+        JdbcCodeGenerator.QueryAndArgs queryWithArgs = JdbcCodeGenerator.getQueryAndArgs(methodInfo.params, methodInfo, false, false, "WHERE ", " AND ", false, tableData, nullParams);
 
-        String sql = "SELECT COUNT(*) FROM " + tableInfo.quotedTableFullName + queryWithArgs.query();
+        // Stop at the first matching row instead of counting all
+        String sql = "SELECT EXISTS(SELECT 1 FROM " + tableInfo.quotedTableFullName + queryWithArgs.query() + " LIMIT 1)";
 
-        JdbcCodeGenerator.buildJdbcQueryObject(methodBuilder, sql, queryWithArgs.args(), int.class, true);
+        JdbcCodeGenerator.buildJdbcQueryExists(methodBuilder, sql, queryWithArgs.args());
 
         typeBuilder.addMethod(methodBuilder.build());
         return false;
     }
 
-    private boolean generateRepositoryCountMethod(MethodInfo methodInfo, TableData tableData, TypeSpec.Builder typeBuilder) {
+    private boolean generateRepositoryCountMethod(MethodInfo methodInfo, TableData tableData, TypeSpec.Builder typeBuilder, Set<MethodParamInfo> nullParams) {
         TableInfo tableInfo = tableData.tableInfo;
 
         MethodSpec.Builder methodBuilder = JdbcCodeGenerator.getClassDefinition(methodInfo);
 
-        JdbcCodeGenerator.QueryAndArgs queryWithArgs = JdbcCodeGenerator.getQueryAndArgs(methodInfo.params, methodInfo, false, false, "WHERE ", " AND ", false, tableData);
+        JdbcCodeGenerator.QueryAndArgs queryWithArgs = JdbcCodeGenerator.getQueryAndArgs(methodInfo.params, methodInfo, false, false, "WHERE ", " AND ", false, tableData, nullParams);
 
         String sql = "SELECT COUNT(*) FROM " + tableInfo.quotedTableFullName + queryWithArgs.query();
 
-        JdbcCodeGenerator.buildJdbcQueryObject(methodBuilder, sql, queryWithArgs.args(), int.class, false);
+        JdbcCodeGenerator.buildJdbcQueryObject(methodBuilder, sql, queryWithArgs.args(), int.class);
 
         typeBuilder.addMethod(methodBuilder.build());
         return false;
     }
 
-    private boolean generateRepositorySearchColumnMethod(MethodInfo methodInfo, TableData tableData, TypeSpec.Builder typeBuilder) {
+    private boolean generateRepositorySearchColumnMethod(MethodInfo methodInfo, TableData tableData, TypeSpec.Builder typeBuilder, Set<MethodParamInfo> nullParams) {
         TableInfo tableInfo = tableData.tableInfo;
 
         MethodSpec.Builder methodBuilder = JdbcCodeGenerator.getClassDefinition(methodInfo);
@@ -532,32 +873,38 @@ public class TableProcessor extends AbstractProcessor {
             columnQuery.append(returnColumn.column().quotedColumnName);
         }
 
-        JdbcCodeGenerator.QueryAndArgs queryWithArgs = JdbcCodeGenerator.getQueryAndArgs(methodInfo.params, methodInfo, false, false, "WHERE ", " AND ", false, tableData);
+        JdbcCodeGenerator.QueryAndArgs queryWithArgs = JdbcCodeGenerator.getQueryAndArgs(methodInfo.params, methodInfo, false, false, "WHERE ", " AND ", false, tableData, nullParams);
         List<CodeBlock> sqlArgs;
         if (!columnArgs.isEmpty()) {
             sqlArgs = new ArrayList<>(columnArgs);
             sqlArgs.addAll(queryWithArgs.args());
         } else
             sqlArgs = queryWithArgs.args();
+        JdbcCodeGenerator.appendResultModifierArgs(sqlArgs, methodInfo);
 
         String sql = "SELECT " + columnQuery + " FROM " + tableInfo.quotedTableFullName + queryWithArgs.query() + SqlGenerator.sqlResultModifier(methodInfo);
 
-        JdbcCodeGenerator.buildJdbcQueryReturn(methodBuilder, methodInfo, sql, sqlArgs, false);
+        JdbcCodeGenerator.buildJdbcQueryReturn(methodBuilder, methodInfo, sql, sqlArgs, null);
 
         typeBuilder.addMethod(methodBuilder.build());
         return false;
     }
 
-    private boolean generateRepositorySearchMethod(MethodInfo methodInfo, TableData tableData, TypeSpec.Builder typeBuilder) {
+    private boolean generateRepositorySearchMethod(MethodInfo methodInfo, TableData tableData, TypeSpec.Builder typeBuilder, Set<MethodParamInfo> nullParams) {
         TableInfo tableInfo = tableData.tableInfo;
 
         MethodSpec.Builder methodBuilder = JdbcCodeGenerator.getClassDefinition(methodInfo);
 
-        JdbcCodeGenerator.QueryAndArgs queryWithArgs = JdbcCodeGenerator.getQueryAndArgs(methodInfo.params, methodInfo, false, false, "WHERE ", " AND ", false, tableData);
+        JdbcCodeGenerator.QueryAndArgs queryWithArgs = JdbcCodeGenerator.getQueryAndArgs(methodInfo.params, methodInfo, false, false, "WHERE ", " AND ", false, tableData, nullParams);
+
+        // Select only projection columns
+        MethodInfo.Projection projection = methodInfo.returns.projection();
+        Collection<ColumnInfo> columns = projection == null ? tableData.tableColumns.values() : projection.columns();
+        String mapperName = projection == null ? "tableMapper" : JdbcCodeGenerator.getProjectionMapperName(tableInfo.classPackagePath, projection);
 
         StringBuilder columnQuery = new StringBuilder();
         boolean first = true;
-        for (ColumnInfo column : tableData.tableColumns.values()) {
+        for (ColumnInfo column : columns) {
             if (!first) columnQuery.append(',');
             first = false;
             columnQuery.append(column.quotedColumnName);
@@ -565,19 +912,39 @@ public class TableProcessor extends AbstractProcessor {
 
         String sql = "SELECT " + columnQuery + " FROM " + tableInfo.quotedTableFullName + queryWithArgs.query() + SqlGenerator.sqlResultModifier(methodInfo);
 
-        JdbcCodeGenerator.buildJdbcQueryReturn(methodBuilder, methodInfo, sql, queryWithArgs.args(), true);
+        if (methodInfo.cursor != null) {
+            // Seek from cursor row instead of offset
+            JdbcCodeGenerator.QueryAndArgs seek = JdbcCodeGenerator.getKeysetQueryAndArgs(methodInfo);
+            String where = queryWithArgs.query().isEmpty()
+                    ? " WHERE " + seek.query()
+                    : " WHERE (" + queryWithArgs.query().substring(" WHERE ".length()) + ") AND " + seek.query();
+            String seekSql = "SELECT " + columnQuery + " FROM " + tableInfo.quotedTableFullName + where + SqlGenerator.sqlResultModifier(methodInfo);
+
+            List<CodeBlock> firstPageArgs = new ArrayList<>(queryWithArgs.args());
+            List<CodeBlock> seekArgs = new ArrayList<>(queryWithArgs.args());
+            seekArgs.addAll(seek.args());
+            JdbcCodeGenerator.appendResultModifierArgs(firstPageArgs, methodInfo);
+            JdbcCodeGenerator.appendResultModifierArgs(seekArgs, methodInfo);
+
+            JdbcCodeGenerator.buildKeysetQueryReturn(methodBuilder, methodInfo, sql, seekSql, firstPageArgs, seekArgs);
+            typeBuilder.addMethod(methodBuilder.build());
+            return false;
+        }
+
+        JdbcCodeGenerator.appendResultModifierArgs(queryWithArgs.args(), methodInfo);
+        JdbcCodeGenerator.buildJdbcQueryReturn(methodBuilder, methodInfo, sql, queryWithArgs.args(), mapperName);
 
         typeBuilder.addMethod(methodBuilder.build());
         return false;
     }
 
 
-    private boolean generateRepositoryDeleteMethod(MethodInfo methodInfo, TableData tableData, TypeSpec.Builder typeBuilder) {
+    private boolean generateRepositoryDeleteMethod(MethodInfo methodInfo, TableData tableData, TypeSpec.Builder typeBuilder, Set<MethodParamInfo> nullParams) {
         TableInfo tableInfo = tableData.tableInfo;
 
         MethodSpec.Builder methodBuilder = JdbcCodeGenerator.getClassDefinition(methodInfo);
 
-        JdbcCodeGenerator.QueryAndArgs queryWithArgs = JdbcCodeGenerator.getQueryAndArgs(methodInfo.params, methodInfo, false, false, "WHERE ", " AND ", false, tableData);
+        JdbcCodeGenerator.QueryAndArgs queryWithArgs = JdbcCodeGenerator.getQueryAndArgs(methodInfo.params, methodInfo, false, false, "WHERE ", " AND ", false, tableData, nullParams);
 
         String sql = "DELETE FROM " + tableInfo.quotedTableFullName + queryWithArgs.query();
 
@@ -587,7 +954,42 @@ public class TableProcessor extends AbstractProcessor {
         return false;
     }
 
-    private boolean generateRepositoryUpdateMethod(MethodInfo methodInfo, TableData tableData, TypeSpec.Builder typeBuilder, boolean checkSuccess) {
+    private boolean generateRepositoryBatchModifyMethod(MethodInfo methodInfo, TableData tableData, TypeSpec.Builder typeBuilder) {
+        TableInfo tableInfo = tableData.tableInfo;
+        MethodSpec.Builder methodBuilder = JdbcCodeGenerator.getClassDefinition(methodInfo);
+
+        // Bind each row field, primary key as where condition
+        MethodParamInfo row = methodInfo.params.get(0);
+        List<MethodParamInfo> whereColumns = new ArrayList<>();
+        List<MethodParamInfo> updateColumns = new ArrayList<>();
+        for (ColumnInfo column : row.columns) {
+            String argName = row.paramName + '.' + column.field.getSimpleName() + (row.isRecord ? "()" : "");
+            MethodParamInfo param = new MethodParamInfo(null, Collections.singletonList(column), TypeName.get(column.field.asType()).toString(), argName, false, null, false);
+            if (column.isPrimaryKey)
+                whereColumns.add(param);
+            else
+                updateColumns.add(param);
+        }
+
+        String sql;
+        List<MethodParamInfo> bindColumns = new ArrayList<>();
+        if (methodInfo.delete) {
+            JdbcCodeGenerator.QueryAndArgs where = JdbcCodeGenerator.getQueryAndArgs(whereColumns, null, false, false, "WHERE ", " AND ", false, tableData);
+            sql = "DELETE FROM " + tableInfo.quotedTableFullName + where.query();
+        } else {
+            JdbcCodeGenerator.QueryAndArgs update = JdbcCodeGenerator.updateQueryAndArgs(whereColumns, updateColumns, null, tableData, Set.of());
+            sql = "UPDATE " + tableInfo.quotedTableFullName + update.query();
+            bindColumns.addAll(updateColumns);
+        }
+        bindColumns.addAll(whereColumns);
+
+        buildBatchUpdate(methodBuilder, methodInfo, tableData, CodeBlock.of(""), bindColumns, sql);
+
+        typeBuilder.addMethod(methodBuilder.build());
+        return false;
+    }
+
+    private boolean generateRepositoryUpdateMethod(MethodInfo methodInfo, TableData tableData, TypeSpec.Builder typeBuilder, boolean checkSuccess, Set<MethodParamInfo> nullParams) {
         if (methodInfo.returns.list()) {
             console.printMessage(ERROR, "Unsupported method return type: " + methodInfo.returnTypeMirror + ", for update method", methodInfo.method);
             return true;
@@ -608,23 +1010,43 @@ public class TableProcessor extends AbstractProcessor {
                     console.printMessage(ERROR, "Multiple column for value", param.parameter);
                     return true;
                 }
+                if (param.multiValueElementType != null) {
+                    console.printMessage(ERROR, "Multiple values can only be used as where condition", param.parameter);
+                    return true;
+                }
                 updateColumns.add(param);
             }
         }
 
         methodBuilder.addCode(JdbcCodeGenerator.checkAndConvertEnumToStringArray(methodInfo.params));
 
-        JdbcCodeGenerator.QueryAndArgs update = JdbcCodeGenerator.updateQueryAndArgs(whereColumns, updateColumns, methodInfo, tableData);
+        JdbcCodeGenerator.QueryAndArgs update = JdbcCodeGenerator.updateQueryAndArgs(whereColumns, updateColumns, methodInfo, tableData, nullParams);
 
         String sql = "UPDATE " + tableInfo.quotedTableFullName + update.query();
 
-        if (methodInfo.returns.table()) {
+        // Update and return the row in one statement
+        if (methodInfo.returns.table() && dialect != SqlDialect.GENERIC) {
+            StringBuilder columnQuery = new StringBuilder();
+            for (ColumnInfo column : tableData.tableColumns.values()) {
+                if (!columnQuery.isEmpty()) columnQuery.append(',');
+                columnQuery.append(column.quotedColumnName);
+            }
+            String returningSql = dialect == SqlDialect.POSTGRESQL
+                    ? sql + " RETURNING " + columnQuery
+                    : "SELECT " + columnQuery + " FROM FINAL TABLE (" + sql + ")";
+
+            if (update.args().isEmpty())
+                methodBuilder.addStatement("$T<$T> result = jdbc.query($S, tableMapper)", List.class, TypeName.get(methodInfo.returnTypeMirror), returningSql);
+            else
+                methodBuilder.addStatement("$T<$T> result = jdbc.query($S, tableMapper, $L)", List.class, TypeName.get(methodInfo.returnTypeMirror), returningSql, CodeBlock.join(update.args(), ", "));
+            methodBuilder.addStatement("return result.size() == 1 ? result.get(0) : null");
+        } else if (methodInfo.returns.table()) {
             if (update.args().isEmpty())
                 methodBuilder.beginControlFlow("if (jdbc.update($S) == 1)", sql);
             else
                 methodBuilder.beginControlFlow("if (jdbc.update($S, $L) == 1)", sql, CodeBlock.join(update.args(), ", "));
 
-            JdbcCodeGenerator.QueryAndArgs where = JdbcCodeGenerator.getQueryAndArgs(whereColumns, null, false, false, "WHERE ", " AND ", false, tableData);
+            JdbcCodeGenerator.QueryAndArgs where = JdbcCodeGenerator.updatedRowQueryAndArgs(whereColumns, methodInfo, tableData, nullParams);
 
             StringBuilder columnQuery = new StringBuilder();
             boolean first = true;
@@ -636,7 +1058,7 @@ public class TableProcessor extends AbstractProcessor {
 
             String selectSql = "SELECT " + columnQuery + " FROM " + tableInfo.quotedTableFullName + where.query();
 
-            JdbcCodeGenerator.buildJdbcQueryReturn(methodBuilder, methodInfo, selectSql, where.args(), true);
+            JdbcCodeGenerator.buildJdbcQueryReturn(methodBuilder, methodInfo, selectSql, where.args(), "tableMapper");
 
             methodBuilder.endControlFlow();
             methodBuilder.addStatement("return null");
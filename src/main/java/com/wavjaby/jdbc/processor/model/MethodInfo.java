@@ -3,19 +3,24 @@ package com.wavjaby.jdbc.processor.model;
 import com.wavjaby.jdbc.annotation.*;
 import com.wavjaby.jdbc.annotation.conf.Direction;
 import com.wavjaby.jdbc.processor.EmptyProcessingException;
+import com.wavjaby.jdbc.processor.TableProcessor;
 import com.wavjaby.jdbc.processor.util.MethodParamParser;
+import com.wavjaby.jdbc.util.KeysetPage;
 import org.jspecify.annotations.NonNull;
 
 import javax.annotation.processing.Messager;
 import javax.lang.model.element.*;
 import javax.lang.model.type.*;
+import javax.lang.model.util.Types;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CompletableFuture;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 import static com.wavjaby.jdbc.processor.util.AnnotationHelper.*;
 import static com.wavjaby.jdbc.processor.util.MethodParamParser.getTypeName;
@@ -28,6 +33,8 @@ public class MethodInfo {
     public final ExecutableElement method;
 
     public final TypeMirror returnTypeMirror;
+    // Declared CompletableFuture return type, returnTypeMirror is the future result type
+    public final TypeMirror asyncReturnType;
     public final String methodName;
     public final List<MethodParamInfo> params;
     // Operation
@@ -38,10 +45,22 @@ public class MethodInfo {
     public final OrderBy[] orderBy;
     // Limit
     public final Integer limit;
+    public final MethodParamInfo limitParam;
+    public final MethodParamInfo offsetParam;
+    // Fetch size
+    public final Integer fetchSize;
     // Custom Query
     public final QuerySQL querySql;
     public final SqlParamInfo[] querySqlParams;
 
+    // Row callback parameter
+    public final MethodParamInfo rowConsumer;
+    public final TypeMirror rowConsumerElementType;
+
+    // Keyset pagination
+    public final MethodParamInfo cursor;
+    public final OrderBy[] keysetOrder;
+
     // Throw exception when not found
     public final NotFoundException notFound;
 
@@ -52,12 +71,29 @@ public class MethodInfo {
     // Insert method
     public final boolean batchInsert;
     public final boolean insertMethod;
+    // Update or delete by primary key with List<TableClass> parameter
+    public final boolean batchModify;
+    // Conflict key of upsert method
+    public final List<ColumnInfo> upsertKey;
+    // Rows per statement of multi-row batch insert, in descending order
+    public final int[] batchShapes;
+    // Rows per JDBC batch of List<TableClass> method
+    public static final int DEFAULT_BATCH_SIZE = 1000;
+    public final int batchSize;
+    // Partitions of parallel batch insert, 1 when not parallel
+    public final int parallelism;
+    public final boolean parallelAtomic;
+
+    // Nullable where parameters, query is generated for each null combination
+    public static final int MAX_NULL_CHECK_PARAMS = 3;
+    public final List<MethodParamInfo> nullCheckParams;
 
     public MethodInfo(ExecutableElement method, TableData tableData, Messager console) throws EmptyProcessingException {
         this.method = method;
         this.tableData = tableData;
         this.methodName = method.getSimpleName().toString();
-        this.returnTypeMirror = method.getReturnType();
+        this.asyncReturnType = isCompletableFuture(method.getReturnType()) ? method.getReturnType() : null;
+        this.returnTypeMirror = asyncReturnType == null ? method.getReturnType() : initAsyncResultType(asyncReturnType, method, console);
 
         this.modifyRow = method.getAnnotation(Modifying.class) != null;
         this.delete = method.getAnnotation(Delete.class) != null;
@@ -66,8 +102,15 @@ public class MethodInfo {
         this.orderBy = initOrderBy(method, tableData, console);
 
         Limit limit = method.getAnnotation(Limit.class);
+        if (limit != null && limit.value() < 0) {
+            printError(console, method, Limit.class, "value", "Limit value must be set and not negative");
+            throw new EmptyProcessingException();
+        }
         this.limit = limit == null ? null : limit.value();
 
+        FetchSize fetchSize = method.getAnnotation(FetchSize.class);
+        this.fetchSize = fetchSize == null ? null : fetchSize.value();
+
         QuerySQL querySQL = method.getAnnotation(QuerySQL.class);
         Select select = method.getAnnotation(Select.class);
 
@@ -78,14 +121,53 @@ public class MethodInfo {
         // Get method parameters
         MethodParamParser parser = parseParamsToColumns(customSql, console);
         this.params = parser.params;
-        this.batchInsert = parser.batchInsert;
-        this.insertMethod = parser.insertMethod;
+        this.batchModify = parser.batchInsert && (modifyRow || delete);
+        this.batchInsert = parser.batchInsert && !batchModify;
+        this.insertMethod = parser.insertMethod && !batchModify;
+        if (batchModify && tableData.primaryKey.isEmpty()) {
+            console.printMessage(ERROR, "Batch update or delete requires primary key in table '" + tableData.tableInfo.classPath + "'", method);
+            throw new EmptyProcessingException();
+        }
 
         this.querySqlParams = initSqlParams("querySql", customSql.query, params, method, console);
 
+        this.upsertKey = initUpsertKey(method, insertMethod, returnTypeMirror, tableData, console);
+
+        this.batchShapes = initBatchShapes(method, batchInsert && upsertKey == null, console);
+        Batch batch = method.getAnnotation(Batch.class);
+        this.batchSize = batch == null ? DEFAULT_BATCH_SIZE : batch.batchSize();
+        this.parallelism = batch == null ? 1 : batch.parallelism();
+        this.parallelAtomic = batch == null || batch.atomic();
+
+        this.nullCheckParams = initNullCheckParams(params, modifyRow, insertMethod || batchInsert);
+
+        this.limitParam = initResultModifierParam(params, true, this.limit, method, console);
+        this.offsetParam = initResultModifierParam(params, false, this.limit, method, console);
+
         this.notFound = initNotFoundException(method);
 
         this.returns = initReturnInfo(select, customSql, returnTypeMirror, tableData, params, method, console);
+
+        this.rowConsumer = initRowConsumer(params, returns, returnTypeMirror, tableData, method, console);
+        this.rowConsumerElementType = rowConsumer == null ? null : getRowConsumerElementType(rowConsumer);
+
+        this.cursor = initCursor(params, returns, tableData, method, console);
+        this.keysetOrder = cursor == null ? null : initKeysetOrder(orderBy, this.limit != null || this.limitParam != null, querySql, tableData, method, console);
+
+        if (cursor != null && offsetParam != null) {
+            printError(console, offsetParam.parameter, Offset.class, "@Offset can not use with keyset pagination");
+            throw new EmptyProcessingException();
+        }
+        if ((limitParam != null || offsetParam != null) &&
+                (modifyRow || delete || count || insertMethod || returnTypeMirror.getKind() == TypeKind.BOOLEAN)) {
+            console.printMessage(ERROR, "@Limit and @Offset parameter can only be used with select method", method);
+            throw new EmptyProcessingException();
+        }
+
+        if (this.fetchSize != null && !this.returns.list() && this.rowConsumer == null) {
+            printError(console, method, FetchSize.class, "Fetch size can only be used with List, Stream return type or row consumer");
+            throw new EmptyProcessingException();
+        }
     }
 
     public record CustomSqlRaw(List<SqlParam> column, List<SqlParam> query) {
@@ -156,6 +238,122 @@ public class MethodInfo {
         return result;
     }
 
+    private static List<ColumnInfo> initUpsertKey(ExecutableElement method, boolean insertMethod, TypeMirror returnType, TableData tableData, Messager console) throws EmptyProcessingException {
+        Upsert upsert = method.getAnnotation(Upsert.class);
+        if (upsert == null)
+            return null;
+        if (!insertMethod) {
+            printError(console, method, Upsert.class, "Upsert method must have a table class parameter");
+            throw new EmptyProcessingException();
+        }
+        TypeKind returnKind = returnType.getKind();
+        if (returnKind != TypeKind.VOID && returnKind != TypeKind.INT && returnKind != TypeKind.BOOLEAN) {
+            printError(console, method, Upsert.class, "Upsert method must return void, int or boolean");
+            throw new EmptyProcessingException();
+        }
+
+        List<ColumnInfo> key = new ArrayList<>();
+        for (String fieldName : upsert.fieldNames()) {
+            ColumnInfo column = tableData.tableFields.get(fieldName);
+            if (column == null) {
+                printError(console, method, Upsert.class, "fieldNames", "Field '" + fieldName + "' not exist in table '" + tableData.tableInfo.classPath + "'");
+                throw new EmptyProcessingException();
+            }
+            key.add(column);
+        }
+        if (key.isEmpty())
+            key.addAll(tableData.primaryKey);
+
+        // Conflict target must be backed by a unique index
+        boolean uniqueKey = !key.isEmpty() && key.size() == tableData.primaryKey.size() && key.containsAll(tableData.primaryKey);
+        for (List<ColumnInfo> unique : tableData.uniqueKeyList) {
+            if (unique.size() == key.size() && key.containsAll(unique))
+                uniqueKey = true;
+        }
+        if (!uniqueKey) {
+            printError(console, method, Upsert.class, "fieldNames", "Upsert fields must match the primary key or a unique key");
+            throw new EmptyProcessingException();
+        }
+        for (ColumnInfo column : key) {
+            if (column.idGenerator != null) {
+                printError(console, method, Upsert.class, "fieldNames", "Upsert can not use generated column '" + column.columnName + "' as conflict key");
+                throw new EmptyProcessingException();
+            }
+        }
+        return key;
+    }
+
+    private static boolean isCompletableFuture(TypeMirror type) {
+        return type instanceof DeclaredType declaredType &&
+                ((TypeElement) declaredType.asElement()).getQualifiedName().contentEquals(CompletableFuture.class.getName());
+    }
+
+    // Result type of CompletableFuture, Void and Integer/Boolean are processed as void and int/boolean method
+    private static TypeMirror initAsyncResultType(TypeMirror asyncReturnType, ExecutableElement method, Messager console) throws EmptyProcessingException {
+        List<? extends TypeMirror> typeArguments = ((DeclaredType) asyncReturnType).getTypeArguments();
+        if (typeArguments.size() != 1 || !(typeArguments.getFirst() instanceof DeclaredType resultType)) {
+            console.printMessage(ERROR, "CompletableFuture return type requires a declared result type, method: " + method, method);
+            throw new EmptyProcessingException();
+        }
+        Types typeUtils = TableProcessor.getTypeUtils();
+        Name resultName = ((TypeElement) resultType.asElement()).getQualifiedName();
+        if (resultName.contentEquals(Void.class.getName()))
+            return typeUtils.getNoType(TypeKind.VOID);
+        if (resultName.contentEquals(Integer.class.getName()) || resultName.contentEquals(Boolean.class.getName()))
+            return typeUtils.unboxedType(resultType);
+        return resultType;
+    }
+
+    private static int[] initBatchShapes(ExecutableElement method, boolean batchInsert, Messager console) throws EmptyProcessingException {
+        Batch batch = method.getAnnotation(Batch.class);
+        if (batch == null)
+            return null;
+        if (!batchInsert) {
+            printError(console, method, Batch.class, "@Batch can only be used with List<TableClass> insert method");
+            throw new EmptyProcessingException();
+        }
+        int rows = batch.rowsPerStatement();
+        if (rows < 1) {
+            printError(console, method, Batch.class, "rowsPerStatement", "Rows per statement must be positive");
+            throw new EmptyProcessingException();
+        }
+        if (batch.batchSize() < 1) {
+            printError(console, method, Batch.class, "batchSize", "Batch size must be positive");
+            throw new EmptyProcessingException();
+        }
+        if (batch.parallelism() < 1) {
+            printError(console, method, Batch.class, "parallelism", "Parallelism must be positive");
+            throw new EmptyProcessingException();
+        }
+        // One row per statement is a plain JDBC batch of single row inserts
+        if (rows == 1)
+            return null;
+        // Fixed statement shapes keep the prepared statement cache small
+        if (rows > 16)
+            return new int[]{rows, 16, 1};
+        return new int[]{rows, 1};
+    }
+
+    private static List<MethodParamInfo> initNullCheckParams(List<MethodParamInfo> params, boolean modifyRow, boolean insert) {
+        if (insert)
+            return List.of();
+        List<MethodParamInfo> result = new ArrayList<>();
+        for (MethodParamInfo param : params) {
+            if (param.dataClass || param.columns.size() != 1 || param.multiValueElementType != null || param.ignoreCase ||
+                    !param.whereOperation.equals("=") || modifyRow && !param.where ||
+                    param.parameter.asType().getKind().isPrimitive())
+                continue;
+            ColumnInfo column = param.columns.getFirst();
+            if (!column.nullable || column.isArray)
+                continue;
+            // Other parameters fall back to IS NOT DISTINCT FROM
+            if (result.size() == MAX_NULL_CHECK_PARAMS)
+                break;
+            result.add(param);
+        }
+        return result;
+    }
+
     public record NotFoundException(TypeElement exception, String args) {
 
     }
@@ -249,10 +447,46 @@ public class MethodInfo {
             ReturnColumn column,
             boolean table,
             boolean list,
+            boolean stream,
+            boolean page,
+            Projection projection,
             String typeName) {
 
     }
 
+    public record Projection(TypeElement type, List<ColumnInfo> columns) {
+    }
+
+    private static Projection initProjection(TypeMirror type, TableData tableData, ExecutableElement method, Messager console) throws EmptyProcessingException {
+        if (!(type instanceof DeclaredType declaredType) || declaredType.asElement().getKind() != ElementKind.RECORD)
+            return null;
+        TypeElement typeElement = (TypeElement) declaredType.asElement();
+
+        // Record components must be subset of table fields
+        List<ColumnInfo> columns = new ArrayList<>();
+        boolean error = false;
+        for (RecordComponentElement component : typeElement.getRecordComponents()) {
+            String fieldName = component.getSimpleName().toString();
+            ColumnInfo column = tableData.tableFields.get(fieldName);
+            if (column == null) {
+                console.printMessage(ERROR, "Projection '" + typeElement.getQualifiedName() + "' field '" + fieldName +
+                        "' not exist in table " + tableData.tableInfo.classPath, method);
+                error = true;
+                continue;
+            }
+            if (!component.asType().toString().equals(column.field.asType().toString())) {
+                console.printMessage(ERROR, "Projection '" + typeElement.getQualifiedName() + "' field '" + fieldName +
+                        "' type '" + component.asType() + "' does not match table field type '" + column.field.asType() + "'", method);
+                error = true;
+                continue;
+            }
+            columns.add(column);
+        }
+        if (error)
+            throw new EmptyProcessingException();
+        return new Projection(typeElement, columns);
+    }
+
     private static ReturnInfo initReturnInfo(Select select, CustomSqlRaw customSql, TypeMirror returnTypeMirror, TableData tableData, List<MethodParamInfo> params, ExecutableElement method, Messager console) throws EmptyProcessingException {
         ReturnColumn returnColumn = initReturnColumn(select, customSql.column, tableData, params, method, console);
 
@@ -267,11 +501,26 @@ public class MethodInfo {
                     throw new EmptyProcessingException();
                 }
 
-                return new ReturnInfo(returnColumn, true, false, tableData.tableInfo.className);
+                return new ReturnInfo(returnColumn, true, false, false, false, null, tableData.tableInfo.className);
+            }
+
+            // Check if return type is keyset page
+            if (returnTypeClassPath.equals(KeysetPage.class.getName())) {
+                TypeMirror genericSuperType = declaredReturnType.getTypeArguments().get(0);
+                if (!genericSuperType.toString().equals(tableData.tableInfo.classPath)) {
+                    console.printMessage(ERROR, "KeysetPage element type must be table class '" + tableData.tableInfo.classPath + "'", method);
+                    throw new EmptyProcessingException();
+                }
+                if (!returnColumn.isNull()) {
+                    printError(console, method, Select.class, "Return with table class must not use @Select");
+                    throw new EmptyProcessingException();
+                }
+                return new ReturnInfo(returnColumn, true, true, false, true, null, tableData.tableInfo.className);
             }
 
-            // Check if return type is List
-            if (returnTypeClassPath.equals(List.class.getName())) {
+            // Check if return type is List or Stream
+            boolean stream = returnTypeClassPath.equals(Stream.class.getName());
+            if (stream || returnTypeClassPath.equals(List.class.getName())) {
                 TypeMirror genericSuperType = declaredReturnType.getTypeArguments().get(0);
                 // Check generic type is valid
                 if (genericSuperType.toString().equals(tableData.tableInfo.classPath)) {
@@ -279,37 +528,68 @@ public class MethodInfo {
                         printError(console, method, Select.class, "Return with table class must not use @Select");
                         throw new EmptyProcessingException();
                     }
-                    return new ReturnInfo(returnColumn, true, true, tableData.tableInfo.className);
+                    return new ReturnInfo(returnColumn, true, true, stream, false, null, tableData.tableInfo.className);
                 } else if (!returnColumn.isNull()) {
-                    return new ReturnInfo(returnColumn, false, true, getTypeName(genericSuperType));
+                    return new ReturnInfo(returnColumn, false, true, stream, false, null, getTypeName(genericSuperType));
                 }
+                // Check if return projection record
+                Projection projection = initProjection(genericSuperType, tableData, method, console);
+                if (projection != null)
+                    return new ReturnInfo(returnColumn, false, true, stream, false, projection, getTypeName(genericSuperType));
             }
             // Check if return column
             else if (!returnColumn.isNull()) {
-                return new ReturnInfo(returnColumn, false, false, getTypeName(returnTypeMirror));
+                return new ReturnInfo(returnColumn, false, false, false, false, null, getTypeName(returnTypeMirror));
+            }
+            // Check if return projection record
+            else {
+                Projection projection = initProjection(returnTypeMirror, tableData, method, console);
+                if (projection != null)
+                    return new ReturnInfo(returnColumn, false, false, false, false, projection, getTypeName(returnTypeMirror));
             }
         } else if (returnTypeMirror instanceof PrimitiveType primitiveReturnType) {
             if (primitiveReturnType.getKind() == TypeKind.BOOLEAN) {
-                return new ReturnInfo(returnColumn, false, false, "boolean");
+                return new ReturnInfo(returnColumn, false, false, false, false, null, "boolean");
             }
             if (primitiveReturnType.getKind() == TypeKind.INT) {
-                return new ReturnInfo(returnColumn, false, false, "int");
+                return new ReturnInfo(returnColumn, false, false, false, false, null, "int");
             }
         } else if (returnTypeMirror instanceof ArrayType arrayType) {
-            if (!(arrayType.getComponentType() instanceof DeclaredType) && arrayType.getComponentType().getKind() != TypeKind.BYTE) {
-                console.printMessage(ERROR, "Primitive array is not supported: " + arrayType + ", use List or DeclaredType array instead.", method);
+            TypeKind componentKind = arrayType.getComponentType().getKind();
+            // Primitive array of a single value column, collect all rows
+            if (componentKind == TypeKind.LONG || componentKind == TypeKind.INT || componentKind == TypeKind.DOUBLE) {
+                if (returnColumn.isNull()) {
+                    console.printMessage(ERROR, "Return with primitive array type must use @Select", method);
+                    throw new EmptyProcessingException();
+                }
+                if (returnColumn.column() != null && returnColumn.column().isArray) {
+                    printError(console, method, Select.class, "field",
+                            "Return with primitive array type requires a single value column, field '" + returnColumn.column().field.getSimpleName() + "' is an array");
+                    throw new EmptyProcessingException();
+                }
+                if (returnColumn.column() != null && !isPrimitiveReadable(returnColumn.column().field.asType(), componentKind)) {
+                    printError(console, method, Select.class, "field",
+                            "Return with " + arrayType + " type can not hold field '" + returnColumn.column().field.getSimpleName() +
+                                    "' type '" + returnColumn.column().field.asType() + "'");
+                    throw new EmptyProcessingException();
+                }
+                return new ReturnInfo(returnColumn, false, true, false, false, null, getTypeName(returnTypeMirror));
+            }
+
+            if (!(arrayType.getComponentType() instanceof DeclaredType) && componentKind != TypeKind.BYTE) {
+                console.printMessage(ERROR, "Primitive array is not supported: " + arrayType + ", use long[], int[], double[], List or DeclaredType array instead.", method);
                 throw new EmptyProcessingException();
             }
 
             // Only allow when return field is used
             if (!returnColumn.isNull()) {
-                return new ReturnInfo(returnColumn, false, false, getTypeName(returnTypeMirror));
+                return new ReturnInfo(returnColumn, false, false, false, false, null, getTypeName(returnTypeMirror));
             } else {
                 console.printMessage(ERROR, "Return with array type must use returnField, to query multiple objects, use List<>", method);
                 throw new EmptyProcessingException();
             }
         } else if (returnTypeMirror instanceof NoType) {
-            return new ReturnInfo(returnColumn, false, false, "void");
+            return new ReturnInfo(returnColumn, false, false, false, false, null, "void");
         }
 
         console.printMessage(ERROR, "Repository '" + tableData.tableInfo.repoIntPackagePath +
@@ -318,6 +598,180 @@ public class MethodInfo {
         throw new EmptyProcessingException();
     }
 
+    private static MethodParamInfo initResultModifierParam(List<MethodParamInfo> params, boolean limit, Integer limitValue, ExecutableElement method, Messager console) throws EmptyProcessingException {
+        Class<? extends java.lang.annotation.Annotation> annotation = limit ? Limit.class : Offset.class;
+        MethodParamInfo result = null;
+        for (MethodParamInfo param : params) {
+            if (limit ? !param.limit : !param.offset)
+                continue;
+            if (result != null) {
+                printError(console, param.parameter, annotation, "Only one @" + annotation.getSimpleName() + " parameter is allowed");
+                throw new EmptyProcessingException();
+            }
+            result = param;
+        }
+        if (result != null && limit && limitValue != null) {
+            printError(console, method, Limit.class, "@Limit can not be used on both method and parameter");
+            throw new EmptyProcessingException();
+        }
+        return result;
+    }
+
+    private static MethodParamInfo initCursor(List<MethodParamInfo> params, ReturnInfo returns, TableData tableData, ExecutableElement method, Messager console) throws EmptyProcessingException {
+        MethodParamInfo cursor = null;
+        for (MethodParamInfo param : params) {
+            if (!param.cursor)
+                continue;
+            if (cursor != null) {
+                printError(console, param.parameter, Cursor.class, "Only one @Cursor parameter is allowed");
+                throw new EmptyProcessingException();
+            }
+            cursor = param;
+        }
+
+        if (cursor == null) {
+            if (returns.page()) {
+                console.printMessage(ERROR, "Return with KeysetPage must have a @Cursor parameter", method);
+                throw new EmptyProcessingException();
+            }
+            return null;
+        }
+
+        if (!returns.table() || !returns.list() || returns.stream()) {
+            printError(console, cursor.parameter, Cursor.class, "@Cursor method must return List or KeysetPage of table class '" + tableData.tableInfo.classPath + "'");
+            throw new EmptyProcessingException();
+        }
+        return cursor;
+    }
+
+    private static OrderBy[] initKeysetOrder(OrderBy[] orderBy, boolean haveLimit, QuerySQL querySql, TableData tableData, ExecutableElement method, Messager console) throws EmptyProcessingException {
+        if (!haveLimit) {
+            console.printMessage(ERROR, "Keyset pagination requires @Limit for page size", method);
+            throw new EmptyProcessingException();
+        }
+        if (querySql != null && querySql.override()) {
+            printError(console, method, QuerySQL.class, "override", "Keyset pagination can not use with override query SQL");
+            throw new EmptyProcessingException();
+        }
+        if (tableData.primaryKey.isEmpty()) {
+            console.printMessage(ERROR, "Keyset pagination requires primary key in table '" + tableData.tableInfo.classPath + "'", method);
+            throw new EmptyProcessingException();
+        }
+
+        List<OrderBy> keys = new ArrayList<>();
+        Direction direction = Direction.ASC;
+        if (orderBy != null) {
+            for (OrderBy order : orderBy) {
+                // Seek predicate can not compare null or array value
+                if (order.column().nullable || order.column().isArray) {
+                    printError(console, method, Order.class, "Keyset pagination order field '" + order.column().field.getSimpleName() + "' must be non-null and not array");
+                    throw new EmptyProcessingException();
+                }
+                keys.add(order);
+                direction = order.direction();
+            }
+        }
+        // Primary key as tie-breaker for unique order
+        for (ColumnInfo column : tableData.primaryKey) {
+            boolean exist = false;
+            for (OrderBy key : keys) {
+                if (key.column() == column) {
+                    exist = true;
+                    break;
+                }
+            }
+            if (!exist)
+                keys.add(new OrderBy(column, direction));
+        }
+        return keys.toArray(new OrderBy[0]);
+    }
+
+    private static MethodParamInfo initRowConsumer(List<MethodParamInfo> params, ReturnInfo returns, TypeMirror returnTypeMirror, TableData tableData, ExecutableElement method, Messager console) throws EmptyProcessingException {
+        MethodParamInfo rowConsumer = null;
+        for (MethodParamInfo param : params) {
+            if (!param.rowConsumer)
+                continue;
+            if (rowConsumer != null) {
+                console.printMessage(ERROR, "Only one row consumer parameter is allowed", param.parameter);
+                throw new EmptyProcessingException();
+            }
+            rowConsumer = param;
+        }
+        if (rowConsumer == null)
+            return null;
+
+        if (!(returnTypeMirror instanceof NoType)) {
+            console.printMessage(ERROR, "Method with row consumer parameter must return void", method);
+            throw new EmptyProcessingException();
+        }
+
+        TypeMirror elementType = getRowConsumerElementType(rowConsumer);
+        boolean tableConsumer = elementType != null && elementType.toString().equals(tableData.tableInfo.classPath);
+        if (tableConsumer && !returns.column().isNull()) {
+            printError(console, method, Select.class, "Row consumer with table class must not use @Select");
+            throw new EmptyProcessingException();
+        }
+        if (!tableConsumer && returns.column().isNull()) {
+            console.printMessage(ERROR, "Row consumer of '" + rowConsumer.paramTypeName + "' must use @Select to specify the column", rowConsumer.parameter);
+            throw new EmptyProcessingException();
+        }
+
+        // Check consumer accepts the selected field type, column SQL type is only known at runtime
+        ColumnInfo column = returns.column().column();
+        if (!tableConsumer && column != null) {
+            TypeKind consumerKind = switch (((DeclaredType) rowConsumer.parameter.asType()).asElement().getSimpleName().toString()) {
+                case "LongConsumer" -> TypeKind.LONG;
+                case "IntConsumer" -> TypeKind.INT;
+                case "DoubleConsumer" -> TypeKind.DOUBLE;
+                default -> null;
+            };
+            boolean match = consumerKind != null
+                    ? isPrimitiveReadable(column.field.asType(), consumerKind)
+                    : elementType != null && TableProcessor.getTypeUtils().isAssignable(boxed(column.field.asType()), elementType);
+            if (!match) {
+                console.printMessage(ERROR, "Row consumer of '" + rowConsumer.paramTypeName + "' does not accept field '" +
+                        column.field.getSimpleName() + "' type '" + column.field.asType() + "'", rowConsumer.parameter);
+                throw new EmptyProcessingException();
+            }
+        }
+        return rowConsumer;
+    }
+
+    // Field value can be read with ResultSet getLong, getInt or getDouble without losing value
+    private static boolean isPrimitiveReadable(TypeMirror fieldType, TypeKind targetKind) {
+        TypeKind fieldKind = fieldType.getKind();
+        if (!fieldKind.isPrimitive()) {
+            try {
+                fieldKind = TableProcessor.getTypeUtils().unboxedType(fieldType).getKind();
+            } catch (IllegalArgumentException e) {
+                return false;
+            }
+        }
+        return switch (targetKind) {
+            case LONG -> fieldKind == TypeKind.LONG || fieldKind == TypeKind.INT || fieldKind == TypeKind.SHORT || fieldKind == TypeKind.BYTE;
+            case INT -> fieldKind == TypeKind.INT || fieldKind == TypeKind.SHORT || fieldKind == TypeKind.BYTE;
+            case DOUBLE -> fieldKind == TypeKind.DOUBLE || fieldKind == TypeKind.FLOAT || fieldKind == TypeKind.LONG ||
+                    fieldKind == TypeKind.INT || fieldKind == TypeKind.SHORT || fieldKind == TypeKind.BYTE;
+            default -> false;
+        };
+    }
+
+    private static TypeMirror boxed(TypeMirror type) {
+        if (type instanceof PrimitiveType primitiveType)
+            return TableProcessor.getTypeUtils().boxedClass(primitiveType).asType();
+        return type;
+    }
+
+    private static TypeMirror getRowConsumerElementType(MethodParamInfo rowConsumer) {
+        DeclaredType consumerType = (DeclaredType) rowConsumer.parameter.asType();
+        if (consumerType.getTypeArguments().isEmpty())
+            return null;
+        TypeMirror elementType = consumerType.getTypeArguments().get(0);
+        if (elementType instanceof WildcardType wildcardType)
+            return wildcardType.getSuperBound() != null ? wildcardType.getSuperBound() : wildcardType.getExtendsBound();
+        return elementType;
+    }
+
     private static boolean initCount(TypeMirror returnTypeMirror, ExecutableElement method, Messager console) throws EmptyProcessingException {
         // Check @Count method return type
         boolean count = method.getAnnotation(Count.class) != null;
@@ -365,7 +819,7 @@ public class MethodInfo {
             if (selfTableParamType.asElement().toString().equals(List.class.getName())) {
                 if (!(this.returnTypeMirror instanceof PrimitiveType primitiveReturnType) ||
                         primitiveReturnType.getKind() != TypeKind.INT) {
-                    console.printMessage(ERROR, "Return type must be int for batch insert method", method);
+                    console.printMessage(ERROR, "Return type must be int for batch method", method);
                     throw new EmptyProcessingException();
                 }
                 DeclaredType genericSuperType = (DeclaredType) selfTableParamType.getTypeArguments().get(0);
@@ -377,6 +831,8 @@ public class MethodInfo {
     }
 
     private boolean isElementTableClass(VariableElement parameter) {
+        if (parameter.getAnnotation(Cursor.class) != null)
+            return false;
         if (parameter.asType() instanceof DeclaredType declaredType) {
             // Check if declaredType is List
             if (declaredType.asElement().toString().equals(List.class.getName())) {
@@ -4,10 +4,16 @@ import com.wavjaby.jdbc.annotation.Where;
 
 import javax.lang.model.element.Element;
 import javax.lang.model.element.ElementKind;
+import javax.lang.model.type.ArrayType;
 import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeMirror;
+import java.util.Collection;
 import java.util.List;
+import java.util.Set;
 
 public class MethodParamInfo {
+    private static final Set<String> collectionTypes = Set.of(List.class.getName(), Collection.class.getName(), Set.class.getName());
+
     public final List<ColumnInfo> columns;
     public final String paramTypeName;
     public final String paramName;
@@ -17,6 +23,12 @@ public class MethodParamInfo {
     public final boolean where;
     public final boolean ignoreCase;
     public final boolean customSqlParam;
+    public final boolean rowConsumer;
+    public final boolean cursor;
+    public final boolean limit;
+    public final boolean offset;
+    // Collection or array matched against a single value column, element type of the values
+    public final TypeMirror multiValueElementType;
     // Default = "="
     public final String whereOperation;
 
@@ -31,7 +43,50 @@ public class MethodParamInfo {
         this.where = where != null;
         this.ignoreCase = this.where && where.ignoreCase();
         this.customSqlParam = customSqlParam;
+        this.rowConsumer = false;
+        this.cursor = false;
+        this.limit = false;
+        this.offset = false;
+        this.multiValueElementType = dataClass || parameter == null ? null : getMultiValueElementType(parameter.asType(), columns);
 
         this.whereOperation = this.where ? where.operation() : "=";
     }
+
+    public MethodParamInfo(Element parameter, String paramTypeName, String paramName, boolean rowConsumer, boolean cursor, boolean limit, boolean offset) {
+        this.columns = List.of();
+        this.paramTypeName = paramTypeName;
+        this.paramName = paramName;
+        this.parameter = parameter;
+        this.dataClass = false;
+        this.isRecord = parameter.asType() instanceof DeclaredType declaredType &&
+                declaredType.asElement().getKind() == ElementKind.RECORD;
+        this.where = false;
+        this.ignoreCase = false;
+        this.customSqlParam = false;
+        this.rowConsumer = rowConsumer;
+        this.cursor = cursor;
+        this.limit = limit;
+        this.offset = offset;
+        this.multiValueElementType = null;
+
+        this.whereOperation = "=";
+    }
+
+    private static TypeMirror getMultiValueElementType(TypeMirror parameterType, List<ColumnInfo> columns) {
+        TypeMirror elementType;
+        if (parameterType instanceof ArrayType arrayType)
+            elementType = arrayType.getComponentType();
+        else if (parameterType instanceof DeclaredType declaredType &&
+                collectionTypes.contains(declaredType.asElement().toString()) &&
+                declaredType.getTypeArguments().size() == 1)
+            elementType = declaredType.getTypeArguments().get(0);
+        else
+            return null;
+
+        // Same type as column field, compare as single value
+        for (ColumnInfo column : columns)
+            if (column.field.asType().toString().equals(parameterType.toString()))
+                return null;
+        return elementType;
+    }
 }
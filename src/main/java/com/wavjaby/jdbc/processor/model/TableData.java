@@ -3,7 +3,9 @@ package com.wavjaby.jdbc.processor.model;
 import com.wavjaby.jdbc.annotation.Table;
 import com.wavjaby.jdbc.processor.EmptyProcessingException;
 import com.wavjaby.jdbc.annotation.JoinColumn;
+import com.wavjaby.jdbc.annotation.Index;
 import com.wavjaby.jdbc.annotation.UniqueConstraint;
+import com.wavjaby.jdbc.annotation.conf.Direction;
 
 import javax.annotation.processing.Messager;
 import javax.lang.model.element.AnnotationMirror;
@@ -25,6 +27,9 @@ public class TableData {
     public final List<ColumnInfo> primaryKey = new ArrayList<>();
     public final List<List<ColumnInfo>> uniqueKeyList = new ArrayList<>();
     public final List<ForeignKeyGroup> foreignKeyList = new ArrayList<>();
+    public final List<IndexGroup> indexList = new ArrayList<>();
+    // Columns compared with LOWER(col), need expression index
+    public final Set<ColumnInfo> ignoreCaseColumns = new LinkedHashSet<>();
 
     private TableData virtualBaseTableData;
 
@@ -39,6 +44,10 @@ public class TableData {
         }
     }
 
+    public record IndexGroup(String name, List<ColumnInfo> columns, List<Direction> directions,
+                             boolean unique, String where, List<ColumnInfo> include) {
+    }
+
     public TableData(TableInfo tableInfo) {
         this.tableInfo = tableInfo;
     }
@@ -115,6 +124,82 @@ public class TableData {
             index++;
         }
 
+        return parseIndexes(constraintMirror, console);
+    }
+
+    private boolean parseIndexes(AnnotationMirror tableMirror, Messager console) {
+        List<? extends AnnotationValue> indexes = getAnnotationValueList(tableMirror, "indexes");
+        assert indexes != null;
+        int index = 0;
+        for (Index indexAnn : tableInfo.tableAnn.indexes()) {
+            AnnotationMirror indexMirror = getAnnotationMirrorFromValue(indexes.get(index++));
+            if (tableInfo.isVirtual) {
+                console.printMessage(ERROR, "Index can not be defined on virtual table", tableInfo.tableClassEle, indexMirror);
+                return true;
+            }
+            if (indexAnn.columnNames().length == 0 && indexAnn.fieldNames().length == 0) {
+                console.printMessage(ERROR, "Index must define at least one column or field", tableInfo.tableClassEle, indexMirror);
+                return true;
+            }
+
+            List<ColumnInfo> columns = new ArrayList<>();
+            List<Direction> directions = new ArrayList<>();
+            // Get index column by field name
+            for (String name : indexAnn.fieldNames()) {
+                String[] nameAndDirection = name.trim().split("\\s+");
+                ColumnInfo columnInfo = this.tableFields.get(nameAndDirection[0]);
+                if (columnInfo == null) {
+                    AnnotationValue field = getAnnotationValue(indexMirror, "fieldNames");
+                    console.printMessage(ERROR, "Field '" + nameAndDirection[0] + "' not exist in table '" + tableInfo.classPath + "'", tableInfo.tableClassEle, indexMirror, field);
+                    return true;
+                }
+                if (addIndexColumn(columnInfo, nameAndDirection, columns, directions, indexMirror, "fieldNames", console))
+                    return true;
+            }
+            // Get index column by column name
+            for (String name : indexAnn.columnNames()) {
+                String[] nameAndDirection = name.trim().split("\\s+");
+                ColumnInfo columnInfo = this.tableColumns.get(nameAndDirection[0]);
+                if (columnInfo == null) {
+                    AnnotationValue column = getAnnotationValue(indexMirror, "columnNames");
+                    console.printMessage(ERROR, "Column '" + nameAndDirection[0] + "' not exist in table: " + tableInfo.name, tableInfo.tableClassEle, indexMirror, column);
+                    return true;
+                }
+                if (addIndexColumn(columnInfo, nameAndDirection, columns, directions, indexMirror, "columnNames", console))
+                    return true;
+            }
+            // Get covering column by field name
+            List<ColumnInfo> include = new ArrayList<>();
+            for (String name : indexAnn.include()) {
+                ColumnInfo columnInfo = this.tableFields.get(name.trim());
+                if (columnInfo == null) {
+                    AnnotationValue field = getAnnotationValue(indexMirror, "include");
+                    console.printMessage(ERROR, "Field '" + name + "' not exist in table '" + tableInfo.classPath + "'", tableInfo.tableClassEle, indexMirror, field);
+                    return true;
+                }
+                include.add(columnInfo);
+            }
+
+            String name = indexAnn.name().isBlank() ? tableInfo.getIndexName(columns) : indexAnn.name().trim();
+            String where = indexAnn.where().isBlank() ? null : indexAnn.where().trim();
+            indexList.add(new IndexGroup(name, columns, directions, indexAnn.unique(), where, include));
+        }
+        return false;
+    }
+
+    private boolean addIndexColumn(ColumnInfo columnInfo, String[] nameAndDirection, List<ColumnInfo> columns, List<Direction> directions,
+                                   AnnotationMirror indexMirror, String key, Messager console) {
+        Direction direction = Direction.ASC;
+        if (nameAndDirection.length > 2 || nameAndDirection.length == 2 &&
+                !nameAndDirection[1].equalsIgnoreCase("ASC") && !nameAndDirection[1].equalsIgnoreCase("DESC")) {
+            console.printMessage(ERROR, "Invalid index column '" + String.join(" ", nameAndDirection) + "', expected '<name> [ASC|DESC]'",
+                    tableInfo.tableClassEle, indexMirror, getAnnotationValue(indexMirror, key));
+            return true;
+        }
+        if (nameAndDirection.length == 2)
+            direction = Direction.valueOf(nameAndDirection[1].toUpperCase());
+        columns.add(columnInfo);
+        directions.add(direction);
         return false;
     }
 
@@ -133,6 +218,12 @@ public class TableData {
                 continue;
             }
             interfaceMethodInfo.add(methodInfo);
+
+            if (tableInfo.isVirtual) continue;
+            for (MethodParamInfo param : methodInfo.params) {
+                if (param.ignoreCase && param.multiValueElementType == null)
+                    ignoreCaseColumns.addAll(param.columns);
+            }
         }
 
         return error;
@@ -78,6 +78,18 @@ public class TableInfo {
         this.virtualBaseClass = virtualBaseClass;
     }
 
+    public String getIndexName(List<ColumnInfo> columns) {
+        StringBuilder sb = new StringBuilder(name);
+        for (ColumnInfo info : columns) {
+            sb.append('_').append(info.columnName);
+        }
+        return sb.append("_idx").toString();
+    }
+
+    public String getLowerIndexName(ColumnInfo column) {
+        return name + '_' + column.columnName + "_lower_idx";
+    }
+
     public String getUniqueKey(List<ColumnInfo> uniqueKey) {
         StringBuilder sb = new StringBuilder(" " + name);
         for (ColumnInfo info : uniqueKey) {
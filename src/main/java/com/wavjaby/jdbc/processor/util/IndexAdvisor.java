@@ -0,0 +1,271 @@
+package com.wavjaby.jdbc.processor.util;
+
+import com.wavjaby.jdbc.annotation.conf.Direction;
+import com.wavjaby.jdbc.processor.model.ColumnInfo;
+import com.wavjaby.jdbc.processor.model.MethodInfo;
+import com.wavjaby.jdbc.processor.model.MethodParamInfo;
+import com.wavjaby.jdbc.processor.model.TableData;
+
+import javax.annotation.processing.Filer;
+import javax.annotation.processing.Messager;
+import javax.tools.StandardLocation;
+import java.io.IOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import static javax.tools.Diagnostic.Kind.WARNING;
+
+public class IndexAdvisor {
+    public static final String OPTION = "easyjdbc.indexAdvisor";
+    public static final String REPORT_PACKAGE = "com.wavjaby.jdbc.util";
+    public static final String REPORT_FILE = "index-advisor.json";
+
+    // Unique index finds at most one row once all its columns are compared by equality
+    private record IndexKey(List<KeyColumn> columns, boolean unique) {
+    }
+
+    // Column used by the generated query, lower is true when compared with LOWER(col)
+    private record KeyColumn(ColumnInfo column, boolean lower, Direction direction) {
+    }
+
+    private record Advice(TableData tableData, MethodInfo method, List<KeyColumn> predicate, List<KeyColumn> order,
+                         String suggestedIndexName) {
+    }
+
+    private final List<Advice> adviceList = new ArrayList<>();
+
+    public static boolean isEnabled(String option) {
+        return option == null || !option.equalsIgnoreCase("false");
+    }
+
+    public void analyze(Collection<TableData> tables) {
+        for (TableData tableData : tables) {
+            // Virtual table is a join query, index belongs to the joined tables
+            if (tableData.tableInfo.isVirtual)
+                continue;
+
+            List<IndexKey> indexes = getTableIndexes(tableData);
+            for (MethodInfo method : tableData.interfaceMethodInfo) {
+                if (method.insertMethod || method.batchInsert)
+                    continue;
+                // Predicate of overridden custom SQL is unknown
+                if (method.querySql != null && method.querySql.override())
+                    continue;
+                analyzeMethod(tableData, method, indexes);
+            }
+        }
+    }
+
+    private void analyzeMethod(TableData tableData, MethodInfo method, List<IndexKey> indexes) {
+        List<KeyColumn> equality = new ArrayList<>();
+        List<KeyColumn> range = new ArrayList<>();
+        List<MethodParamInfo> orParams = new ArrayList<>();
+        for (MethodParamInfo param : method.params) {
+            if (param.columns.isEmpty() || param.dataClass)
+                continue;
+            // Update value is not a predicate
+            if (method.modifyRow && !param.where)
+                continue;
+            if (param.columns.size() > 1) {
+                orParams.add(param);
+                continue;
+            }
+            KeyColumn key = new KeyColumn(param.columns.getFirst(), param.ignoreCase && param.multiValueElementType == null, Direction.ASC);
+            if (param.whereOperation.equals("="))
+                equality.add(key);
+            else
+                range.add(key);
+        }
+
+        List<KeyColumn> order = new ArrayList<>();
+        MethodInfo.OrderBy[] orderBy = method.keysetOrder != null ? method.keysetOrder : method.orderBy;
+        boolean haveLimit = method.limit != null || method.limitParam != null || method.cursor != null;
+        if (orderBy != null && haveLimit) {
+            for (MethodInfo.OrderBy by : orderBy)
+                order.add(new KeyColumn(by.column(), false, by.direction()));
+        }
+
+        // Only OR conditions, every column need its own index
+        if (equality.isEmpty() && range.isEmpty() && !orParams.isEmpty()) {
+            for (MethodParamInfo param : orParams) {
+                for (ColumnInfo column : param.columns) {
+                    KeyColumn key = new KeyColumn(column, param.ignoreCase, Direction.ASC);
+                    if (!isSupported(indexes, List.of(key), List.of(), List.of()))
+                        addAdvice(tableData, method, List.of(key), List.of());
+                }
+            }
+            return;
+        }
+
+        if (equality.isEmpty() && range.isEmpty() && order.isEmpty())
+            return;
+        if (isSupported(indexes, equality, range, order))
+            return;
+
+        // Equality columns first, only one range column is usable and it ends the usable prefix
+        List<KeyColumn> suggested = new ArrayList<>(equality);
+        if (!range.isEmpty())
+            suggested.add(range.getFirst());
+        else
+            suggested.addAll(order);
+        addAdvice(tableData, method, suggested, range.isEmpty() ? order : List.of());
+    }
+
+    private void addAdvice(TableData tableData, MethodInfo method, List<KeyColumn> columns, List<KeyColumn> order) {
+        StringBuilder name = new StringBuilder(tableData.tableInfo.name);
+        for (KeyColumn key : columns) {
+            name.append('_').append(key.column.columnName);
+        }
+        name.append("_idx");
+        // Same column used by multiple OR condition
+        for (Advice advice : adviceList) {
+            if (advice.method == method && advice.suggestedIndexName.contentEquals(name))
+                return;
+        }
+        List<KeyColumn> predicate = new ArrayList<>(columns);
+        predicate.removeAll(order);
+        adviceList.add(new Advice(tableData, method, predicate, order, name.toString()));
+    }
+
+    // Same shape as the suggested index: equality columns in any order as index prefix,
+    // followed by a range column, or by the order columns scanned forward or backward
+    private static boolean isSupported(List<IndexKey> indexes, List<KeyColumn> equality, List<KeyColumn> range, List<KeyColumn> order) {
+        for (IndexKey index : indexes) {
+            List<KeyColumn> columns = index.columns;
+            // Unique index fully matched by equality columns
+            if (index.unique && columns.size() <= equality.size() && containsAll(equality, columns))
+                return true;
+
+            if (columns.size() < equality.size() || !containsAll(equality, columns.subList(0, equality.size())))
+                continue;
+            List<KeyColumn> rest = columns.subList(equality.size(), columns.size());
+            if (!range.isEmpty()) {
+                if (!rest.isEmpty() && contains(range, rest.getFirst()))
+                    return true;
+            } else if (isOrderPrefix(rest, order))
+                return true;
+        }
+        return false;
+    }
+
+    private static boolean isOrderPrefix(List<KeyColumn> columns, List<KeyColumn> order) {
+        if (columns.size() < order.size())
+            return false;
+        Boolean reverse = null;
+        for (int i = 0; i < order.size(); i++) {
+            KeyColumn column = columns.get(i), by = order.get(i);
+            if (!isSameColumn(column, by))
+                return false;
+            boolean sameDirection = column.direction == by.direction;
+            if (reverse == null)
+                reverse = !sameDirection;
+            else if (reverse == sameDirection)
+                return false;
+        }
+        return true;
+    }
+
+    private static boolean containsAll(List<KeyColumn> keys, List<KeyColumn> columns) {
+        for (KeyColumn column : columns) {
+            if (!contains(keys, column))
+                return false;
+        }
+        return true;
+    }
+
+    private static boolean contains(List<KeyColumn> keys, KeyColumn column) {
+        for (KeyColumn key : keys) {
+            if (isSameColumn(key, column))
+                return true;
+        }
+        return false;
+    }
+
+    private static boolean isSameColumn(KeyColumn a, KeyColumn b) {
+        return a.column.columnName.equals(b.column.columnName) && a.lower == b.lower;
+    }
+
+    private static List<IndexKey> getTableIndexes(TableData tableData) {
+        List<IndexKey> indexes = new ArrayList<>();
+        if (!tableData.primaryKey.isEmpty())
+            indexes.add(new IndexKey(getKeyColumns(tableData.primaryKey, null), true));
+        for (List<ColumnInfo> uniqueKey : tableData.uniqueKeyList)
+            indexes.add(new IndexKey(getKeyColumns(uniqueKey, null), true));
+        for (TableData.IndexGroup index : tableData.indexList)
+            indexes.add(new IndexKey(getKeyColumns(index.columns(), index.directions()), index.unique()));
+        for (ColumnInfo column : tableData.ignoreCaseColumns)
+            indexes.add(new IndexKey(List.of(new KeyColumn(column, true, Direction.ASC)), false));
+        return indexes;
+    }
+
+    private static List<KeyColumn> getKeyColumns(List<ColumnInfo> columns, List<Direction> directions) {
+        List<KeyColumn> keys = new ArrayList<>(columns.size());
+        for (int i = 0; i < columns.size(); i++)
+            keys.add(new KeyColumn(columns.get(i), false, directions == null ? Direction.ASC : directions.get(i)));
+        return keys;
+    }
+
+    public void printWarnings(Messager console) {
+        for (Advice advice : adviceList) {
+            console.printMessage(WARNING, "No index supports the query of '" + advice.method.methodName +
+                    "', suggested index: " + getSuggestedSql(advice), advice.method.method);
+        }
+    }
+
+    public boolean writeReport(Filer filer, Messager console) {
+        StringBuilder builder = new StringBuilder("[");
+        boolean first = true;
+        for (Advice advice : adviceList) {
+            if (!first) builder.append(',');
+            first = false;
+            builder.append("\n  {\"repository\": ").append(quote(advice.tableData.tableInfo.repoIntClassElement.getQualifiedName().toString()))
+                    .append(", \"method\": ").append(quote(advice.method.methodName))
+                    .append(", \"table\": ").append(quote(advice.tableData.tableInfo.tableFullName))
+                    .append(", \"predicate\": ").append(toJsonArray(advice.predicate))
+                    .append(", \"order\": ").append(toJsonArray(advice.order))
+                    .append(", \"suggestedIndex\": ").append(quote(getSuggestedSql(advice)))
+                    .append('}');
+        }
+        builder.append(adviceList.isEmpty() ? "]\n" : "\n]\n");
+
+        try (Writer out = filer.createResource(StandardLocation.SOURCE_OUTPUT, REPORT_PACKAGE, REPORT_FILE).openWriter()) {
+            out.write(builder.toString());
+        } catch (IOException e) {
+            console.printMessage(WARNING, "Failed to write index advisor report: " + e.getMessage());
+            return true;
+        }
+        return false;
+    }
+
+    private static String getSuggestedSql(Advice advice) {
+        StringBuilder builder = new StringBuilder("CREATE INDEX ").append(advice.suggestedIndexName)
+                .append(" ON ").append(advice.tableData.tableInfo.quotedTableFullName).append(" (");
+        List<KeyColumn> columns = new ArrayList<>(advice.predicate);
+        columns.addAll(advice.order);
+        for (int i = 0; i < columns.size(); i++) {
+            if (i != 0) builder.append(',');
+            builder.append(getColumnSql(columns.get(i)));
+        }
+        return builder.append(')').toString();
+    }
+
+    private static String getColumnSql(KeyColumn key) {
+        String sql = key.lower ? "LOWER(" + key.column.quotedColumnName + ')' : key.column.quotedColumnName;
+        return key.direction == Direction.DESC ? sql + " DESC" : sql;
+    }
+
+    private static String toJsonArray(List<KeyColumn> columns) {
+        StringBuilder builder = new StringBuilder("[");
+        for (int i = 0; i < columns.size(); i++) {
+            if (i != 0) builder.append(", ");
+            builder.append(quote(getColumnSql(columns.get(i))));
+        }
+        return builder.append(']').toString();
+    }
+
+    private static String quote(String value) {
+        return '"' + value.replace("\\", "\\\\").replace("\"", "\\\"") + '"';
+    }
+}
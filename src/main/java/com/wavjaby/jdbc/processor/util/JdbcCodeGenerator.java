@@ -2,27 +2,65 @@ package com.wavjaby.jdbc.processor.util;
 
 
 import com.squareup.javapoet.*;
+import com.wavjaby.jdbc.annotation.conf.Direction;
 import com.wavjaby.jdbc.processor.model.*;
+import com.wavjaby.jdbc.util.KeysetPage;
+import com.wavjaby.jdbc.util.PrimitiveArrayExtractor;
+import com.wavjaby.jdbc.util.ResultSetUtil;
+import org.springframework.jdbc.core.ArgumentPreparedStatementSetter;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.jdbc.core.ResultSetExtractor;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.jdbc.core.RowMapperResultSetExtractor;
+import org.springframework.jdbc.core.SingleColumnRowMapper;
 import org.springframework.jdbc.core.SqlParameterValue;
+import org.springframework.jdbc.core.SqlTypeValue;
+import org.springframework.jdbc.core.StatementCreatorUtils;
 
+import javax.lang.model.element.ElementKind;
 import javax.lang.model.element.Modifier;
+import javax.lang.model.element.TypeElement;
 import javax.lang.model.type.*;
+import java.sql.ResultSet;
+import java.sql.SQLException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.Locale;
+import java.util.Set;
+import java.util.function.DoubleConsumer;
+import java.util.function.IntConsumer;
+import java.util.function.LongConsumer;
 
 public class JdbcCodeGenerator {
+    // Upper bound for pre-sized result buffer
+    private static final int MAX_RESULT_CAPACITY = 4096;
 
     public record QueryAndArgs(StringBuilder query, List<CodeBlock> args) {
     }
 
     public static QueryAndArgs getQueryAndArgs(List<MethodParamInfo> params, MethodInfo methodInfo, boolean insert, boolean update, String prefix, String conjunction, boolean tableConstructor, TableData tableData) {
+        return getQueryAndArgs(params, methodInfo, insert, update, prefix, conjunction, tableConstructor, tableData, Set.of());
+    }
+
+    /**
+     * @param nullParams parameters that are null in the generated code branch, compared with IS NULL without binding
+     */
+    public static QueryAndArgs getQueryAndArgs(List<MethodParamInfo> params, MethodInfo methodInfo, boolean insert, boolean update, String prefix, String conjunction, boolean tableConstructor, TableData tableData,
+                                               Set<MethodParamInfo> nullParams) {
+        return getQueryAndArgs(params, methodInfo, insert, update, prefix, conjunction, tableConstructor, tableData, nullParams, true);
+    }
+
+    private static QueryAndArgs getQueryAndArgs(List<MethodParamInfo> params, MethodInfo methodInfo, boolean insert, boolean update, String prefix, String conjunction, boolean tableConstructor, TableData tableData,
+                                                Set<MethodParamInfo> nullParams, boolean appendQuerySql) {
         StringBuilder queryBuilder = new StringBuilder();
         List<CodeBlock> args = new ArrayList<>();
 
-        boolean haveCustomSql = methodInfo != null && methodInfo.querySqlParams != null;
+        boolean haveCustomSql = appendQuerySql && methodInfo != null && methodInfo.querySqlParams != null;
         boolean customSqlOverride = haveCustomSql && methodInfo.querySql.override();
-        if (!tableConstructor && (!params.isEmpty() || haveCustomSql)) {
+        boolean haveColumns = params.stream().anyMatch(param -> !param.columns.isEmpty());
+        if (!tableConstructor && (haveColumns || haveCustomSql)) {
             queryBuilder.append(' ');
             if (prefix != null && !customSqlOverride)
                 queryBuilder.append(prefix);
@@ -53,13 +91,20 @@ public class JdbcCodeGenerator {
                     }
 
                     // Query where with ignore case
-                    if (!update && param.ignoreCase) {
-                        queryBuilder.append("LOWER(").append(column.quotedColumnName).append(") ").append(param.whereOperation).append(" LOWER(?)");
+                    if (!update && param.multiValueElementType != null) {
+                        queryBuilder.append(column.quotedColumnName).append(' ').append(param.whereOperation).append(" ANY(?)");
+                    } else if (!update && param.ignoreCase) {
+                        // Parameter is lowercased in Java, LOWER(col) can use the expression index
+                        queryBuilder.append("LOWER(").append(column.quotedColumnName).append(") ").append(param.whereOperation).append(" ?");
                     } else if (insert) {
                         queryBuilder.append(column.quotedColumnName);
+                    } else if (!update && nullParams.contains(param)) {
+                        // Null argument branch, no value to bind
+                        queryBuilder.append(column.quotedColumnName).append(" IS NULL");
+                        continue;
                     } else {
                         queryBuilder.append(column.quotedColumnName)
-                                .append(!update && column.nullable ? " IS NOT DISTINCT FROM " : param.whereOperation).append('?');
+                                .append(!update && column.nullable && !isNullChecked(methodInfo, param) ? " IS NOT DISTINCT FROM " : param.whereOperation).append('?');
                     }
 
                     String argName = param.paramName;
@@ -71,6 +116,10 @@ public class JdbcCodeGenerator {
 
                     if (tableConstructor) {
                         args.add(CodeBlock.of("$L", argName));
+                    } else if (param.multiValueElementType != null) {
+                        appendMultiValueArgs(args, argName, param, column.isEnum);
+                    } else if (!update && param.ignoreCase) {
+                        args.add(CodeBlock.of("$L == null ? null : $L.toLowerCase($T.ROOT)", argName, argName, Locale.class));
                     } else {
                         // If enum array exists, use pre-calculated variable
                         if (column.isArray && column.isEnum) {
@@ -103,7 +152,7 @@ public class JdbcCodeGenerator {
         }
 
         // Appends query SQL and parameters if present
-        if (methodInfo != null && methodInfo.querySql != null && methodInfo.querySqlParams != null) {
+        if (haveCustomSql && methodInfo.querySql != null) {
             if (conditionCount > -1 && !insert)
                 queryBuilder.append(' ').append(methodInfo.querySql.conjunction()).append(' ');
 
@@ -141,8 +190,121 @@ public class JdbcCodeGenerator {
         }
     }
 
-    public static QueryAndArgs updateQueryAndArgs(List<MethodParamInfo> whereColumns, List<MethodParamInfo> updateColumns, MethodInfo methodInfo, TableData tableData) {
-        QueryAndArgs where = getQueryAndArgs(whereColumns, methodInfo, false, false, "WHERE ", " AND ", false, tableData);
+    // Argument can not be null or null is handled by a separate code branch
+    private static boolean isNullChecked(MethodInfo methodInfo, MethodParamInfo param) {
+        return param.parameter != null && param.parameter.asType().getKind().isPrimitive() && !param.dataClass ||
+                methodInfo != null && methodInfo.nullCheckParams.contains(param);
+    }
+
+    public static QueryAndArgs getKeysetQueryAndArgs(MethodInfo methodInfo) {
+        StringBuilder queryBuilder = new StringBuilder();
+        List<CodeBlock> args = new ArrayList<>();
+        MethodInfo.OrderBy[] keys = methodInfo.keysetOrder;
+        MethodParamInfo cursor = methodInfo.cursor;
+
+        boolean uniformDirection = true;
+        for (MethodInfo.OrderBy key : keys)
+            if (key.direction() != keys[0].direction()) {
+                uniformDirection = false;
+                break;
+            }
+
+        if (uniformDirection) {
+            // Row value comparison: (a,b) > (?,?)
+            String operator = keys[0].direction() == Direction.ASC ? ">" : "<";
+            if (keys.length > 1) queryBuilder.append('(');
+            for (int i = 0; i < keys.length; i++) {
+                if (i != 0) queryBuilder.append(',');
+                queryBuilder.append(keys[i].column().quotedColumnName);
+            }
+            queryBuilder.append(keys.length > 1 ? ") " : " ").append(operator).append(keys.length > 1 ? " (" : " ");
+            for (int i = 0; i < keys.length; i++) {
+                if (i != 0) queryBuilder.append(',');
+                queryBuilder.append('?');
+                appendCursorArg(args, cursor, keys[i].column());
+            }
+            if (keys.length > 1) queryBuilder.append(')');
+        } else {
+            // Expanded form: a > ? OR (a = ? AND b < ?) OR ...
+            queryBuilder.append('(');
+            for (int i = 0; i < keys.length; i++) {
+                if (i != 0) queryBuilder.append(" OR ");
+                queryBuilder.append('(');
+                for (int j = 0; j < i; j++) {
+                    queryBuilder.append(keys[j].column().quotedColumnName).append("=? AND ");
+                    appendCursorArg(args, cursor, keys[j].column());
+                }
+                queryBuilder.append(keys[i].column().quotedColumnName)
+                        .append(keys[i].direction() == Direction.ASC ? ">" : "<").append('?');
+                appendCursorArg(args, cursor, keys[i].column());
+                queryBuilder.append(')');
+            }
+            queryBuilder.append(')');
+        }
+        return new QueryAndArgs(queryBuilder, args);
+    }
+
+    private static void appendCursorArg(List<CodeBlock> args, MethodParamInfo cursor, ColumnInfo column) {
+        String argName = cursor.paramName + '.' + column.field.getSimpleName().toString();
+        if (cursor.isRecord) argName += "()";
+        appendArgs(args, argName, false, column.isEnum, false);
+    }
+
+    public static void appendResultModifierArgs(List<CodeBlock> args, MethodInfo methodInfo) {
+        if (methodInfo.limitParam != null)
+            args.add(CodeBlock.of("$L", methodInfo.limitParam.paramName));
+        if (methodInfo.offsetParam != null)
+            args.add(CodeBlock.of("$L", methodInfo.offsetParam.paramName));
+    }
+
+    private static CodeBlock getResultCapacity(MethodInfo methodInfo) {
+        if (methodInfo.limitParam != null)
+            return CodeBlock.of("$T.clamp($L, 0, $L)", Math.class, methodInfo.limitParam.paramName, MAX_RESULT_CAPACITY);
+        if (methodInfo.limit != null)
+            return CodeBlock.of("$L", Math.min(methodInfo.limit, MAX_RESULT_CAPACITY));
+        return null;
+    }
+
+    public static void buildKeysetQueryReturn(MethodSpec.Builder methodBuilder, MethodInfo methodInfo, String firstPageSql, String seekSql, List<CodeBlock> firstPageArgs, List<CodeBlock> seekArgs) {
+        TypeName tableType = ClassName.get((TypeElement) ((DeclaredType) methodInfo.cursor.parameter.asType()).asElement());
+        CodeBlock extractor = CodeBlock.of("new $T<>(tableMapper, $L)", RowMapperResultSetExtractor.class, getResultCapacity(methodInfo));
+        methodBuilder.addStatement("$T<$T> result", List.class, tableType);
+        methodBuilder.beginControlFlow("if ($L == null)", methodInfo.cursor.paramName);
+        buildJdbcQueryWithFetchSize(methodBuilder, methodInfo, "result = ", "jdbc.query", firstPageSql, firstPageArgs, extractor);
+        methodBuilder.nextControlFlow("else");
+        buildJdbcQueryWithFetchSize(methodBuilder, methodInfo, "result = ", "jdbc.query", seekSql, seekArgs, extractor);
+        methodBuilder.endControlFlow();
+
+        if (methodInfo.returns.page())
+            methodBuilder.addStatement("return new $T<>(result, result.size() < $L ? null : result.get(result.size() - 1))",
+                    KeysetPage.class, methodInfo.limitParam != null ? methodInfo.limitParam.paramName : methodInfo.limit);
+        else
+            methodBuilder.addStatement("return result");
+    }
+
+    private static void appendMultiValueArgs(List<CodeBlock> args, String argName, MethodParamInfo param, boolean isEnum) {
+        TypeMirror elementType = param.multiValueElementType;
+        boolean array = param.parameter.asType() instanceof ArrayType;
+        CodeBlock value;
+        if (elementType.getKind().isPrimitive()) {
+            // Box primitive array, driver only accept object array
+            TypeName boxedType = TypeName.get(elementType).box();
+            value = CodeBlock.of("$T.stream($L).boxed().toArray($T[]::new)", Arrays.class, argName, boxedType);
+        } else if (isEnum) {
+            value = array
+                    ? CodeBlock.of("$T.stream($L).map(Enum::name).toArray(String[]::new)", Arrays.class, argName)
+                    : CodeBlock.of("$L.stream().map(Enum::name).toArray(String[]::new)", argName);
+        } else if (array) {
+            value = CodeBlock.of("$L", argName);
+        } else {
+            value = CodeBlock.of("$L.toArray(new $T[0])", argName, TypeName.get(elementType));
+        }
+        args.add(CodeBlock.of("new $T($T.ARRAY, $L)", SqlParameterValue.class, java.sql.Types.class, value));
+    }
+
+    public static QueryAndArgs updateQueryAndArgs(List<MethodParamInfo> whereColumns, List<MethodParamInfo> updateColumns, MethodInfo methodInfo, TableData tableData,
+                                                 Set<MethodParamInfo> nullParams) {
+        QueryAndArgs where = getQueryAndArgs(whereColumns, methodInfo, false, false, "WHERE ", " AND ", false, tableData, nullParams);
         QueryAndArgs values = getQueryAndArgs(updateColumns, null, false, true, "SET ", ",", false, tableData);
 
         values.query.append(where.query);
@@ -151,6 +313,14 @@ public class JdbcCodeGenerator {
         return values;
     }
 
+    /**
+     * Where condition to select the updated row again. @QuerySQL is left out, the update may have changed the columns it matched
+     */
+    public static QueryAndArgs updatedRowQueryAndArgs(List<MethodParamInfo> whereColumns, MethodInfo methodInfo, TableData tableData,
+                                                      Set<MethodParamInfo> nullParams) {
+        return getQueryAndArgs(whereColumns, methodInfo, false, false, "WHERE ", " AND ", false, tableData, nullParams, false);
+    }
+
     public static MethodSpec.Builder getClassDefinition(MethodInfo methodInfo) {
         MethodSpec.Builder methodBuilder = MethodSpec.methodBuilder(methodInfo.methodName)
                 .addAnnotation(Override.class)
@@ -160,7 +330,7 @@ public class JdbcCodeGenerator {
         for (MethodParamInfo param : methodInfo.params) {
             TypeName typeName = TypeName.get(param.parameter.asType());
 
-            if (methodInfo.batchInsert) {
+            if (methodInfo.batchInsert || methodInfo.batchModify) {
                 methodBuilder.addParameter(ParameterizedTypeName.get(ClassName.get(List.class), typeName), param.paramName + "_");
             } else {
                 methodBuilder.addParameter(typeName, param.paramName);
@@ -169,22 +339,20 @@ public class JdbcCodeGenerator {
         return methodBuilder;
     }
 
-    public static void buildJdbcQueryObject(MethodSpec.Builder methodBuilder, String sql, List<CodeBlock> args, Class<?> returnType, boolean checkExistence) {
-        String queryStmt;
-        Object[] queryArgs;
-        if (args.isEmpty()) {
-            queryStmt = "jdbc.queryForObject($S, $T.class)";
-            queryArgs = new Object[]{sql, returnType};
-        } else {
-            queryStmt = "jdbc.queryForObject($S, $T.class, $L)";
-            queryArgs = new Object[]{sql, returnType, CodeBlock.join(args, ", ")};
-        }
+    public static void buildJdbcQueryObject(MethodSpec.Builder methodBuilder, String sql, List<CodeBlock> args, Class<?> returnType) {
+        if (args.isEmpty())
+            methodBuilder.addStatement("return jdbc.queryForObject($S, $T.class)", sql, returnType);
+        else
+            methodBuilder.addStatement("return jdbc.queryForObject($S, $T.class, $L)", sql, returnType, CodeBlock.join(args, ", "));
+    }
 
-        if (checkExistence) {
-            methodBuilder.addStatement("return " + queryStmt + " > 0", queryArgs);
-        } else {
-            methodBuilder.addStatement("return " + queryStmt, queryArgs);
-        }
+    // Read EXISTS result as primitive boolean
+    public static void buildJdbcQueryExists(MethodSpec.Builder methodBuilder, String sql, List<CodeBlock> args) {
+        CodeBlock extractor = CodeBlock.of("($T<$T>) rs -> rs.next() && rs.getBoolean(1)", ResultSetExtractor.class, Boolean.class);
+        if (args.isEmpty())
+            methodBuilder.addStatement("return jdbc.query($S, $L)", sql, extractor);
+        else
+            methodBuilder.addStatement("return jdbc.query($S, $L, $L)", sql, extractor, CodeBlock.join(args, ", "));
     }
 
     public static void buildJdbcUpdate(MethodSpec.Builder methodBuilder, String sql, List<CodeBlock> args, TypeMirror returnType) {
@@ -207,7 +375,46 @@ public class JdbcCodeGenerator {
         }
     }
 
-    public static void buildJdbcQueryReturn(MethodSpec.Builder methodBuilder, MethodInfo methodInfo, String sql, List<CodeBlock> args, boolean useMapper) {
+    public static String getProjectionMapperName(String repoPackage, MethodInfo.Projection projection) {
+        String typeName = getProjectionTypeName(repoPackage, projection);
+        return Character.toLowerCase(typeName.charAt(0)) + typeName.substring(1) + "Mapper";
+    }
+
+    public static ClassName getProjectionMapperClass(ClassName repoClassName, MethodInfo.Projection projection) {
+        return repoClassName.nestedClass(getProjectionTypeName(repoClassName.packageName(), projection) + "RowMapper");
+    }
+
+    // Projection name qualified by enclosing classes and by package outside the repository package,
+    // so projections with the same simple name get different mappers
+    private static String getProjectionTypeName(String repoPackage, MethodInfo.Projection projection) {
+        ClassName projectionClass = ClassName.get(projection.type());
+        List<String> names = new ArrayList<>();
+        if (!projectionClass.packageName().equals(repoPackage) && !projectionClass.packageName().isEmpty())
+            names.addAll(Arrays.asList(projectionClass.packageName().split("\\.")));
+        names.addAll(projectionClass.simpleNames());
+        return String.join("_", names);
+    }
+
+    public static void buildJdbcQueryReturn(MethodSpec.Builder methodBuilder, MethodInfo methodInfo, String sql, List<CodeBlock> args, String mapperName) {
+        boolean useMapper = mapperName != null;
+        if (methodInfo.rowConsumer != null) {
+            buildJdbcQueryCallback(methodBuilder, methodInfo, sql, args, useMapper);
+            return;
+        }
+
+        if (methodInfo.returns.list() && methodInfo.returnTypeMirror instanceof ArrayType arrayType) {
+            String extractorFactory = switch (arrayType.getComponentType().getKind()) {
+                case LONG -> "longArray";
+                case INT -> "intArray";
+                default -> "doubleArray";
+            };
+            // Pre-size buffer when result count is known
+            CodeBlock initialCapacity = getResultCapacity(methodInfo);
+            CodeBlock extractor = CodeBlock.of("$T.$L($L)", PrimitiveArrayExtractor.class, extractorFactory, initialCapacity == null ? CodeBlock.of("0") : initialCapacity);
+            buildJdbcQueryWithFetchSize(methodBuilder, methodInfo, "return ", "jdbc.query", sql, args, extractor);
+            return;
+        }
+
         TypeName returnType = TypeName.get(methodInfo.returnTypeMirror);
         TypeName elementTypeName;
         if (methodInfo.returns.list() && methodInfo.returnTypeMirror instanceof DeclaredType declaredType) {
@@ -221,13 +428,25 @@ public class JdbcCodeGenerator {
             elementTypeName = returnType.box();
         }
 
+        CodeBlock resultCapacity = methodInfo.returns.list() && !methodInfo.returns.stream() ? getResultCapacity(methodInfo) : null;
+        if (methodInfo.returns.stream() || methodInfo.fetchSize != null || resultCapacity != null) {
+            CodeBlock rowMapper = useMapper
+                    ? CodeBlock.of("$L", mapperName)
+                    : CodeBlock.of("$T.newInstance($T.class)", SingleColumnRowMapper.class, elementTypeName);
+            // Size result list from limit
+            if (resultCapacity != null)
+                rowMapper = CodeBlock.of("new $T<>($L, $L)", RowMapperResultSetExtractor.class, rowMapper, resultCapacity);
+            buildJdbcQueryMultiple(methodBuilder, methodInfo, sql, args, rowMapper);
+            return;
+        }
+
         String queryMethod = useMapper ? "jdbc.query" : "jdbc.queryForList";
         CodeBlock queryArgs;
         if (useMapper) {
             if (args.isEmpty()) {
-                queryArgs = CodeBlock.of("$S, tableMapper", sql);
+                queryArgs = CodeBlock.of("$S, $L", sql, mapperName);
             } else {
-                queryArgs = CodeBlock.of("$S, tableMapper, $L", sql, CodeBlock.join(args, ", "));
+                queryArgs = CodeBlock.of("$S, $L, $L", sql, mapperName, CodeBlock.join(args, ", "));
             }
         } else {
             if (args.isEmpty()) {
@@ -263,20 +482,227 @@ public class JdbcCodeGenerator {
         }
     }
 
+    private static void buildJdbcQueryMultiple(MethodSpec.Builder methodBuilder, MethodInfo methodInfo, String sql, List<CodeBlock> args, CodeBlock rowMapper) {
+        String queryMethod = methodInfo.returns.stream() ? "jdbc.queryForStream" : "jdbc.query";
+        buildJdbcQueryWithFetchSize(methodBuilder, methodInfo, "return ", queryMethod, sql, args, rowMapper);
+    }
+
+    private static void buildJdbcQueryCallback(MethodSpec.Builder methodBuilder, MethodInfo methodInfo, String sql, List<CodeBlock> args, boolean useMapper) {
+        String consumerType = ((DeclaredType) methodInfo.rowConsumer.parameter.asType()).asElement().toString();
+        CodeBlock rowValue;
+        if (useMapper) {
+            rowValue = CodeBlock.of("tableMapper.mapRow(rs, 0)");
+        } else if (consumerType.equals(LongConsumer.class.getName())) {
+            rowValue = CodeBlock.of("rs.getLong(1)");
+        } else if (consumerType.equals(IntConsumer.class.getName())) {
+            rowValue = CodeBlock.of("rs.getInt(1)");
+        } else if (consumerType.equals(DoubleConsumer.class.getName())) {
+            rowValue = CodeBlock.of("rs.getDouble(1)");
+        } else {
+            TypeName elementTypeName = TypeName.get(methodInfo.rowConsumerElementType).box();
+            methodBuilder.addStatement("$T<$T> rowMapper = $T.newInstance($T.class)",
+                    RowMapper.class, elementTypeName, SingleColumnRowMapper.class, elementTypeName);
+            rowValue = CodeBlock.of("rowMapper.mapRow(rs, 0)");
+        }
+
+        // Hand each row to the consumer as soon as it is mapped
+        CodeBlock handler = CodeBlock.of("($T) rs -> $L.accept($L)", RowCallbackHandler.class, methodInfo.rowConsumer.paramName, rowValue);
+        buildJdbcQueryWithFetchSize(methodBuilder, methodInfo, "", "jdbc.query", sql, args, handler);
+    }
+
+    private static void buildJdbcQueryWithFetchSize(MethodSpec.Builder methodBuilder, MethodInfo methodInfo, String statementPrefix, String queryMethod, String sql, List<CodeBlock> args, CodeBlock rowHandler) {
+        if (methodInfo.fetchSize == null) {
+            if (args.isEmpty())
+                methodBuilder.addStatement("$L$L($S, $L)", statementPrefix, queryMethod, sql, rowHandler);
+            else
+                methodBuilder.addStatement("$L$L($S, $L, $L)", statementPrefix, queryMethod, sql, rowHandler, CodeBlock.join(args, ", "));
+            return;
+        }
+
+        // Set fetch size on the statement so the driver reads rows in chunks instead of all at once
+        if (args.isEmpty()) {
+            methodBuilder.addStatement("$L$L($S, ps -> ps.setFetchSize($L), $L)", statementPrefix, queryMethod, sql, methodInfo.fetchSize, rowHandler);
+        } else {
+            methodBuilder.addStatement("$T argsSetter = new $T(new Object[]{$L})",
+                    ArgumentPreparedStatementSetter.class, ArgumentPreparedStatementSetter.class, CodeBlock.join(args, ", "));
+            methodBuilder.addCode("$L$L($S, ps -> {\n", statementPrefix, queryMethod, sql);
+            methodBuilder.addCode("$>ps.setFetchSize($L);\n", methodInfo.fetchSize);
+            methodBuilder.addCode("argsSetter.setValues(ps);\n");
+            methodBuilder.addCode("$<}, $L);\n", rowHandler);
+        }
+    }
+
+    public static TypeSpec.Builder buildRowMapper(ClassName mapperClassName, TypeName mappedType, List<ColumnInfo> columns) {
+        List<CodeBlock> values = new ArrayList<>(columns.size());
+        int index = 0;
+        for (ColumnInfo column : columns)
+            values.add(getResultSetValue(column.field.asType(), ++index));
+
+        MethodSpec mapRow = MethodSpec.methodBuilder("mapRow")
+                .addAnnotation(Override.class)
+                .addModifiers(Modifier.PUBLIC)
+                .returns(mappedType)
+                .addParameter(ResultSet.class, "rs")
+                .addParameter(int.class, "rowNum")
+                .addException(SQLException.class)
+                .addStatement("return new $T(\n$L)", mappedType, CodeBlock.join(values, ",\n"))
+                .build();
+
+        return TypeSpec.classBuilder(mapperClassName)
+                .addSuperinterface(ParameterizedTypeName.get(ClassName.get(RowMapper.class), mappedType))
+                .addMethod(mapRow);
+    }
+
+    private static CodeBlock getResultSetValue(TypeMirror type, int index) {
+        if (type instanceof PrimitiveType) {
+            return switch (type.getKind()) {
+                case BOOLEAN -> CodeBlock.of("rs.getBoolean($L)", index);
+                case BYTE -> CodeBlock.of("rs.getByte($L)", index);
+                case SHORT -> CodeBlock.of("rs.getShort($L)", index);
+                case INT -> CodeBlock.of("rs.getInt($L)", index);
+                case LONG -> CodeBlock.of("rs.getLong($L)", index);
+                case FLOAT -> CodeBlock.of("rs.getFloat($L)", index);
+                case DOUBLE -> CodeBlock.of("rs.getDouble($L)", index);
+                default -> CodeBlock.of("$T.getChar(rs, $L)", ResultSetUtil.class, index);
+            };
+        }
+
+        if (type instanceof ArrayType arrayType) {
+            TypeMirror componentType = arrayType.getComponentType();
+            // Auto-detect byte[] to BYTEA
+            if (componentType.getKind() == TypeKind.BYTE)
+                return CodeBlock.of("rs.getBytes($L)", index);
+            if (componentType instanceof DeclaredType declaredType && declaredType.asElement().getKind() == ElementKind.ENUM)
+                return CodeBlock.of("$T.getEnumArray(rs, $L, $T.class)", ResultSetUtil.class, index, TypeName.get(componentType));
+            return CodeBlock.of("$T.getArray(rs, $L, $T.class)", ResultSetUtil.class, index, TypeName.get(type));
+        }
+
+        if (type instanceof DeclaredType declaredType) {
+            if (declaredType.asElement().getKind() == ElementKind.ENUM)
+                return CodeBlock.of("$T.getEnum(rs, $L, $T.class)", ResultSetUtil.class, index, TypeName.get(type));
+
+            String typeName = declaredType.asElement().toString();
+            if (typeName.equals(List.class.getName())) {
+                TypeName elementType = TypeName.get(declaredType.getTypeArguments().get(0));
+                return CodeBlock.of("$T.getList(rs, $L, $T.class)", ResultSetUtil.class, index, elementType);
+            }
+            return switch (typeName) {
+                case "java.lang.String" -> CodeBlock.of("rs.getString($L)", index);
+                case "java.lang.Boolean" -> CodeBlock.of("$T.getBooleanOrNull(rs, $L)", ResultSetUtil.class, index);
+                case "java.lang.Byte" -> CodeBlock.of("$T.getByteOrNull(rs, $L)", ResultSetUtil.class, index);
+                case "java.lang.Short" -> CodeBlock.of("$T.getShortOrNull(rs, $L)", ResultSetUtil.class, index);
+                case "java.lang.Integer" -> CodeBlock.of("$T.getIntOrNull(rs, $L)", ResultSetUtil.class, index);
+                case "java.lang.Long" -> CodeBlock.of("$T.getLongOrNull(rs, $L)", ResultSetUtil.class, index);
+                case "java.lang.Float" -> CodeBlock.of("$T.getFloatOrNull(rs, $L)", ResultSetUtil.class, index);
+                case "java.lang.Double" -> CodeBlock.of("$T.getDoubleOrNull(rs, $L)", ResultSetUtil.class, index);
+                case "java.lang.Character" -> CodeBlock.of("$T.getCharOrNull(rs, $L)", ResultSetUtil.class, index);
+                case "java.math.BigDecimal" -> CodeBlock.of("rs.getBigDecimal($L)", index);
+                case "java.sql.Timestamp" -> CodeBlock.of("rs.getTimestamp($L)", index);
+                case "java.sql.Date" -> CodeBlock.of("rs.getDate($L)", index);
+                case "java.sql.Time" -> CodeBlock.of("rs.getTime($L)", index);
+                default -> CodeBlock.of("rs.getObject($L, $T.class)", index, ClassName.get((TypeElement) declaredType.asElement()));
+            };
+        }
+
+        return CodeBlock.of("rs.getObject($L)", index);
+    }
+
     public static CodeBlock addIdGenerator(TableData tableData, List<MethodParamInfo> infos) {
+        return addIdGenerator(tableData, infos, null);
+    }
+
+    /**
+     * @param rowIndex when not null, ids are taken from arrays reserved by {@link #reserveIds}
+     */
+    public static CodeBlock addIdGenerator(TableData tableData, List<MethodParamInfo> infos, String rowIndex) {
         CodeBlock.Builder codeBlock = CodeBlock.builder();
         int i = -1;
         // Create Ids
         for (ColumnInfo info : tableData.tableFields.values()) {
             ++i;
             if (info.idGenerator == null) continue;
-            String generator = tableData.getDependencyFieldName(info.idGenerator.toString());
-            codeBlock.addStatement("long id$L = $L.nextId()", i, generator);
+            if (rowIndex == null) {
+                String generator = tableData.getDependencyFieldName(info.idGenerator.toString());
+                codeBlock.addStatement("long id$L = $L.nextId()", i, generator);
+            } else
+                codeBlock.addStatement("long id$L = ids$L[$L]", i, i, rowIndex);
             infos.add(i, new MethodParamInfo(null, Collections.singletonList(info), "long", "id" + i, false, null, false));
         }
         return codeBlock.build();
     }
 
+    // Reserve ids of all rows with one generator call
+    public static CodeBlock reserveIds(TableData tableData, String count) {
+        CodeBlock.Builder codeBlock = CodeBlock.builder();
+        int i = -1;
+        for (ColumnInfo info : tableData.tableFields.values()) {
+            ++i;
+            if (info.idGenerator == null) continue;
+            String generator = tableData.getDependencyFieldName(info.idGenerator.toString());
+            codeBlock.addStatement("long[] ids$L = $L.nextIds($L)", i, generator, count);
+        }
+        return codeBlock.build();
+    }
+
+    // Bind values in the order of getQueryAndArgs with typed setter, primitive values are not boxed
+    public static CodeBlock buildStatementBindings(List<MethodParamInfo> infos, String indexOffset) {
+        CodeBlock.Builder codeBlock = CodeBlock.builder();
+        int index = 0;
+        int tempVarCount = 0;
+        for (MethodParamInfo param : infos) {
+            for (ColumnInfo column : param.columns) {
+                if (param.dataClass && column.idGenerator != null)
+                    continue;
+
+                String argName = param.paramName;
+                if (param.dataClass) {
+                    argName += '.' + column.field.getSimpleName().toString();
+                    if (param.isRecord) argName += "()";
+                }
+                CodeBlock parameterIndex = indexOffset == null
+                        ? CodeBlock.of("$L", ++index)
+                        : CodeBlock.of("$L + $L", indexOffset, ++index);
+
+                TypeKind kind = column.field.asType().getKind();
+                if (column.isArray) {
+                    // Enum array use pre-calculated variable
+                    if (column.isEnum)
+                        argName = "var" + tempVarCount++;
+                    codeBlock.addStatement("$T.setParameterValue(ps, $L, $T.ARRAY, $L)", StatementCreatorUtils.class, parameterIndex, java.sql.Types.class, argName);
+                } else if (column.isEnum) {
+                    codeBlock.addStatement("ps.setString($L, $L == null ? null : $L.name())", parameterIndex, argName, argName);
+                } else if (kind.isPrimitive() && kind != TypeKind.CHAR) {
+                    String setter = switch (kind) {
+                        case BOOLEAN -> "setBoolean";
+                        case BYTE -> "setByte";
+                        case SHORT -> "setShort";
+                        case INT -> "setInt";
+                        case LONG -> "setLong";
+                        case FLOAT -> "setFloat";
+                        default -> "setDouble";
+                    };
+                    codeBlock.addStatement("ps.$L($L, $L)", setter, parameterIndex, argName);
+                } else {
+                    codeBlock.addStatement("$T.setParameterValue(ps, $L, $T.TYPE_UNKNOWN, $L)", StatementCreatorUtils.class, parameterIndex, SqlTypeValue.class, argName);
+                }
+            }
+        }
+        return codeBlock.build();
+    }
+
+    // Columns in the order of insert values created by getQueryAndArgs
+    public static List<ColumnInfo> getInsertColumns(List<MethodParamInfo> infos) {
+        List<ColumnInfo> columns = new ArrayList<>();
+        for (MethodParamInfo param : infos) {
+            for (ColumnInfo column : param.columns) {
+                if (param.dataClass && column.idGenerator != null)
+                    continue;
+                columns.add(column);
+            }
+        }
+        return columns;
+    }
+
     public static CodeBlock checkAndConvertEnumToStringArray(List<MethodParamInfo> infos) {
         CodeBlock.Builder codeBlock = CodeBlock.builder();
         int tempVarCount = 0;
@@ -5,23 +5,35 @@ import com.wavjaby.jdbc.processor.model.ColumnInfo;
 import com.wavjaby.jdbc.processor.model.MethodInfo;
 import com.wavjaby.jdbc.processor.model.MethodParamInfo;
 import com.wavjaby.jdbc.processor.model.TableData;
+import com.wavjaby.jdbc.annotation.Cursor;
 import com.wavjaby.jdbc.annotation.FieldName;
+import com.wavjaby.jdbc.annotation.Limit;
+import com.wavjaby.jdbc.annotation.Offset;
 import com.wavjaby.jdbc.annotation.UpdateData;
 import com.wavjaby.jdbc.annotation.Where;
 
 import javax.annotation.processing.Messager;
 import javax.lang.model.element.*;
 import javax.lang.model.type.DeclaredType;
+import javax.lang.model.type.TypeKind;
 import javax.lang.model.type.TypeMirror;
 import java.util.ArrayList;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.DoubleConsumer;
+import java.util.function.IntConsumer;
+import java.util.function.LongConsumer;
 
 import static com.wavjaby.jdbc.processor.util.AnnotationHelper.*;
 import static javax.tools.Diagnostic.Kind.ERROR;
 
 public class MethodParamParser {
+    private static final Set<String> rowConsumerTypes = Set.of(
+            Consumer.class.getName(), LongConsumer.class.getName(), IntConsumer.class.getName(), DoubleConsumer.class.getName());
+
     private final TableData tableData;
     private final MethodInfo.CustomSqlRaw customSql;
     private final Messager console;
@@ -76,6 +88,54 @@ public class MethodParamParser {
             return true;
         }
 
+        // Row callback, receives each mapped row instead of being used as query condition
+        if (isRowConsumer(parameterType)) {
+            if (fieldName != null || where != null || updateData != null) {
+                console.printMessage(ERROR, "Row consumer parameter can not use with @FieldName, @Where or @UpdateData annotation", parameter);
+                return true;
+            }
+            params.add(new MethodParamInfo(parameter, getTypeName(parameterType), parameterName, true, false, false, false));
+            return false;
+        }
+
+        // Keyset pagination cursor, last row of previous page
+        if (parameter.getAnnotation(Cursor.class) != null) {
+            if (fieldName != null || where != null || updateData != null) {
+                console.printMessage(ERROR, "@Cursor can not use with @FieldName, @Where or @UpdateData annotation", parameter);
+                return true;
+            }
+            if (!parameterType.toString().equals(tableData.tableInfo.classPath)) {
+                console.printMessage(ERROR, "@Cursor parameter must be table class '" + tableData.tableInfo.classPath + "'", parameter, getAnnotationMirror(parameter, Cursor.class));
+                return true;
+            }
+            params.add(new MethodParamInfo(parameter, getTypeName(parameterType), parameterName, false, true, false, false));
+            return false;
+        }
+
+        // Result limit and offset bound at runtime
+        Limit limit = parameter.getAnnotation(Limit.class);
+        Offset offset = parameter.getAnnotation(Offset.class);
+        if (limit != null || offset != null) {
+            if (limit != null && offset != null) {
+                console.printMessage(ERROR, "@Limit can not use with @Offset annotation", parameter);
+                return true;
+            }
+            if (fieldName != null || where != null || updateData != null) {
+                console.printMessage(ERROR, "@Limit and @Offset parameter can not use with @FieldName, @Where or @UpdateData annotation", parameter);
+                return true;
+            }
+            if (limit != null && limit.value() != -1) {
+                console.printMessage(ERROR, "@Limit on parameter must not set value", parameter, getAnnotationMirror(parameter, Limit.class));
+                return true;
+            }
+            if (parameterType.getKind() != TypeKind.INT && parameterType.getKind() != TypeKind.LONG) {
+                console.printMessage(ERROR, "@Limit and @Offset parameter must be int or long", parameter);
+                return true;
+            }
+            params.add(new MethodParamInfo(parameter, getTypeName(parameterType), parameterName, false, false, limit != null, offset != null));
+            return false;
+        }
+
         // Process class data
         if ((parameter.asType() instanceof DeclaredType declaredType) &&
                 !declaredType.asElement().getKind().equals(ElementKind.ENUM) &&
@@ -89,6 +149,11 @@ public class MethodParamParser {
         return addParamColumn(parameterType, parameterName, columnFieldName, where, parameter);
     }
 
+    public static boolean isRowConsumer(TypeMirror parameterType) {
+        return parameterType instanceof DeclaredType declaredType &&
+                rowConsumerTypes.contains(declaredType.asElement().toString());
+    }
+
     private boolean addClassFieldsColumn(TypeElement classType, String paramName, Element parameter) {
         Map<String, VariableElement> fields = new LinkedHashMap<>();
         extractClassFields(classType, fields);
@@ -144,7 +209,7 @@ public class MethodParamParser {
             // Check ignore case is used on string type only
             if (where != null && where.ignoreCase() && !parameterType.toString().equals(String.class.getName())) {
                 AnnotationMirror whereMirror = getAnnotationMirror(parameter, Where.class);
-                console.printMessage(ERROR, "ignoreCase can only be used with String type parameter",
+                console.printMessage(ERROR, "ignoreCase can only be used with String type parameter, not with multiple values",
                         parameter, whereMirror, getAnnotationValue(whereMirror, "ignoreCase"));
                 error = true;
             }
@@ -156,6 +221,13 @@ public class MethodParamParser {
 
         MethodParamInfo methodParamInfo = new MethodParamInfo(parameter, columns, getTypeName(parameterType), paramName, false, where, customSqlParam);
 
+        TypeMirror elementType = methodParamInfo.multiValueElementType;
+        if (elementType != null && elementType.getKind().isPrimitive() &&
+                elementType.getKind() != TypeKind.LONG && elementType.getKind() != TypeKind.INT && elementType.getKind() != TypeKind.DOUBLE) {
+            console.printMessage(ERROR, "Primitive array parameter for multiple values must be long[], int[] or double[]", parameter);
+            return true;
+        }
+
         return addParamAndCheckConflict(methodParamInfo);
     }
 
@@ -29,7 +29,8 @@ public class ProcessorUtil {
 
     public static boolean copyUtilityClasses(ProcessingEnvironment processingEnv, Messager console) {
         String[] utilityClasses = {
-                "IdentifierGenerator", "Snowflake", "FastRowMapper", "StringConverter", "FastResultSetExtractor"
+                "IdentifierGenerator", "Snowflake", "FastRowMapper", "StringConverter", "FastResultSetExtractor",
+                "ResultSetUtil", "PrimitiveArrayExtractor", "KeysetPage", "ParallelBatch", "AsyncExecutor"
         };
 
         for (String className : utilityClasses) {
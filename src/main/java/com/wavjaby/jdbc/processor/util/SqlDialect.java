@@ -0,0 +1,27 @@
+package com.wavjaby.jdbc.processor.util;
+
+import javax.annotation.processing.Messager;
+
+import static javax.tools.Diagnostic.Kind.ERROR;
+
+public enum SqlDialect {
+    // Standard SQL only
+    GENERIC,
+    // UPDATE ... RETURNING
+    POSTGRESQL,
+    // SELECT ... FROM FINAL TABLE (UPDATE ...)
+    H2;
+
+    public static final String OPTION = "easyjdbc.dialect";
+
+    public static SqlDialect fromOption(String option, Messager console) {
+        if (option == null || option.isBlank())
+            return GENERIC;
+        for (SqlDialect dialect : values()) {
+            if (dialect.name().equalsIgnoreCase(option.trim()))
+                return dialect;
+        }
+        console.printMessage(ERROR, "Unknown " + OPTION + " '" + option + "', expected one of GENERIC, POSTGRESQL, H2");
+        return null;
+    }
+}
@@ -1,6 +1,7 @@
 package com.wavjaby.jdbc.processor.util;
 
 import com.wavjaby.jdbc.annotation.Column;
+import com.wavjaby.jdbc.annotation.conf.Direction;
 import com.wavjaby.jdbc.processor.model.ColumnInfo;
 import com.wavjaby.jdbc.processor.model.MethodInfo;
 import com.wavjaby.jdbc.processor.model.TableData;
@@ -175,6 +176,68 @@ public class SqlGenerator {
         return false;
     }
 
+    public static String generateUpsertSql(TableData tableData, List<ColumnInfo> columns, List<ColumnInfo> key, SqlDialect dialect) {
+        String table = tableData.tableInfo.quotedTableFullName;
+        List<ColumnInfo> updateColumns = new ArrayList<>(columns);
+        updateColumns.removeAll(key);
+        updateColumns.removeAll(tableData.primaryKey);
+        String columnList = columns.stream().map(i -> i.quotedColumnName).collect(Collectors.joining(","));
+
+        StringBuilder builder = new StringBuilder();
+        if (dialect == SqlDialect.POSTGRESQL) {
+            builder.append("INSERT INTO ").append(table).append(" (").append(columnList).append(")VALUES(")
+                    .append(String.join(",", Collections.nCopies(columns.size(), "?"))).append(") ON CONFLICT (")
+                    .append(key.stream().map(i -> i.quotedColumnName).collect(Collectors.joining(","))).append(")");
+            if (updateColumns.isEmpty())
+                return builder.append(" DO NOTHING").toString();
+            builder.append(" DO UPDATE SET ").append(updateColumns.stream()
+                    .map(i -> i.quotedColumnName + "=EXCLUDED." + i.quotedColumnName).collect(Collectors.joining(",")));
+            return builder.toString();
+        }
+
+        // Standard MERGE
+        builder.append("MERGE INTO ").append(table).append(" t USING (VALUES(")
+                .append(String.join(",", Collections.nCopies(columns.size(), "?"))).append(")) s (").append(columnList).append(") ON ")
+                .append(key.stream().map(i -> "t." + i.quotedColumnName + "=s." + i.quotedColumnName).collect(Collectors.joining(" AND ")));
+        if (!updateColumns.isEmpty())
+            builder.append(" WHEN MATCHED THEN UPDATE SET ").append(updateColumns.stream()
+                    .map(i -> i.quotedColumnName + "=s." + i.quotedColumnName).collect(Collectors.joining(",")));
+        builder.append(" WHEN NOT MATCHED THEN INSERT (").append(columnList).append(")VALUES(")
+                .append(columns.stream().map(i -> "s." + i.quotedColumnName).collect(Collectors.joining(","))).append(")");
+        return builder.toString();
+    }
+
+    public static void generateCreateIndexSql(TableData tableData, TableData.IndexGroup index, StringBuilder builder) {
+        builder.append("CREATE ");
+        if (index.unique()) builder.append("UNIQUE ");
+        builder.append("INDEX IF NOT EXISTS ").append(index.name())
+                .append(" ON ").append(tableData.tableInfo.quotedTableFullName).append(" (");
+        for (int i = 0; i < index.columns().size(); i++) {
+            if (i != 0) builder.append(',');
+            builder.append(index.columns().get(i).quotedColumnName);
+            if (index.directions().get(i) == Direction.DESC)
+                builder.append(" DESC");
+        }
+        builder.append(")");
+        if (!index.include().isEmpty()) {
+            builder.append(" INCLUDE (");
+            for (int i = 0; i < index.include().size(); i++) {
+                if (i != 0) builder.append(',');
+                builder.append(index.include().get(i).quotedColumnName);
+            }
+            builder.append(")");
+        }
+        if (index.where() != null)
+            builder.append(" WHERE ").append(index.where());
+        builder.append(";");
+    }
+
+    public static void generateCreateLowerIndexSql(TableData tableData, ColumnInfo column, StringBuilder builder) {
+        builder.append("CREATE INDEX IF NOT EXISTS ").append(tableData.tableInfo.getLowerIndexName(column))
+                .append(" ON ").append(tableData.tableInfo.quotedTableFullName)
+                .append(" (LOWER(").append(column.quotedColumnName).append("));");
+    }
+
     private static boolean generateColumnDefinition(ColumnInfo columnInfo, TableInfo tableInfo, StringBuilder tableCreateSql, Messager console) {
         VariableElement field = columnInfo.field;
         TypeMirror type = field.asType();
@@ -192,17 +255,22 @@ public class SqlGenerator {
 
     public static StringBuilder sqlResultModifier(MethodInfo methodInfo) {
         StringBuilder builder = new StringBuilder();
-        if (methodInfo.orderBy != null) {
+        MethodInfo.OrderBy[] orderBy = methodInfo.keysetOrder != null ? methodInfo.keysetOrder : methodInfo.orderBy;
+        if (orderBy != null) {
             builder.append(" ORDER BY ");
-            for (int i = 0; i < methodInfo.orderBy.length; i++) {
-                ColumnInfo column = methodInfo.orderBy[i].column();
-                builder.append(column.quotedColumnName).append(" ").append(methodInfo.orderBy[i].direction().name());
-                if (i < methodInfo.orderBy.length - 1)
+            for (int i = 0; i < orderBy.length; i++) {
+                ColumnInfo column = orderBy[i].column();
+                builder.append(column.quotedColumnName).append(" ").append(orderBy[i].direction().name());
+                if (i < orderBy.length - 1)
                     builder.append(", ");
             }
         }
         if (methodInfo.limit != null)
             builder.append(" LIMIT ").append(methodInfo.limit);
+        else if (methodInfo.limitParam != null)
+            builder.append(" LIMIT ?");
+        if (methodInfo.offsetParam != null)
+            builder.append(" OFFSET ?");
         return builder;
     }
 
@@ -0,0 +1,18 @@
+package com.wavjaby.jdbc.util;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+public class AsyncExecutor {
+    // One virtual thread per task, idle virtual threads hold no resources so it is never closed
+    private static final ExecutorService shared = Executors.newVirtualThreadPerTaskExecutor();
+
+    /**
+     * Executor of CompletableFuture repository methods when no easyJdbcAsyncExecutor bean is defined,
+     * shared by every repository.
+     */
+    public static Executor shared() {
+        return shared;
+    }
+}
@@ -24,9 +24,10 @@ public class FastResultSetExtractor<T> implements ResultSetExtractor<List<T>> {
     @Override
     public List<T> extractData(ResultSet rs) throws SQLException, DataAccessException {
         List<T> results = new ArrayList<>();
+        int columnCount = rowMapper.getColumnCount(rs);
         int rowNum = 0;
         while (rs.next())
-            results.add(rowMapper.mapRow(rs, rowNum++));
+            results.add(rowMapper.mapRow(rs, rowNum++, columnCount));
 
         return results;
     }
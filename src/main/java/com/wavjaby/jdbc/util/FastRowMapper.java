@@ -2,10 +2,10 @@ package com.wavjaby.jdbc.util;
 
 import org.springframework.beans.BeanInstantiationException;
 import org.springframework.boot.convert.ApplicationConversionService;
+import org.springframework.core.convert.ConversionService;
 import org.springframework.core.convert.ConverterNotFoundException;
 import org.springframework.core.convert.TypeDescriptor;
-import org.springframework.core.convert.converter.GenericConverter;
-import org.springframework.core.convert.support.GenericConversionService;
+import org.springframework.jdbc.IncorrectResultSetColumnCountException;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.core.RowMapper;
 import org.springframework.jdbc.support.JdbcUtils;
@@ -23,23 +23,18 @@ import static java.lang.reflect.Modifier.isStatic;
 
 
 public class FastRowMapper<T> implements RowMapper<T> {
-    private static final GenericConversionService conversionService = (GenericConversionService) ApplicationConversionService.getSharedInstance();
-    private static final Method getConverter;
-
-    static {
-        try {
-            getConverter = GenericConversionService.class.getDeclaredMethod("getConverter", TypeDescriptor.class, TypeDescriptor.class);
-            getConverter.setAccessible(true);
-        } catch (NoSuchMethodException e) {
-            throw new RuntimeException(e);
-        }
-    }
+    private static final ConversionService conversionService = ApplicationConversionService.getSharedInstance();
+    private static final TypeDescriptor stringTypeDescriptor = TypeDescriptor.valueOf(String.class);
 
     private final Constructor<T> mappedClassConstructor;
     private final int resultFieldCount;
     private final Integer[] staticFieldMap;
     private final Class<?>[] staticFieldType;
-    private final GenericConverter[] staticFieldConverter;
+    private final TypeDescriptor[] staticFieldTypeDescriptor;
+    private final Class<?>[] staticFieldEnumComponent;
+    private final TypeDescriptor[] staticFieldEnumTypeDescriptor;
+    // Value type JdbcUtils.getResultSetValue returns for the field type, null when it returns the field type itself
+    private final TypeDescriptor[] staticFieldSourceTypeDescriptor;
 
     public FastRowMapper(Class<T> mappedClass, int columnCount) {
         Constructor<T> constructor = getConstructor(mappedClass);
@@ -47,7 +42,6 @@ public class FastRowMapper<T> implements RowMapper<T> {
         resultFieldCount = columnCount;
         staticFieldMap = null;
         staticFieldType = new Class[columnCount];
-        staticFieldConverter = new GenericConverter[columnCount];
 
         int index = 0;
         Parameter[] parameters = constructor.getParameters();
@@ -55,6 +49,10 @@ public class FastRowMapper<T> implements RowMapper<T> {
             checkParam(mappedClass, parameter);
             staticFieldType[index++] = parameter.getType();
         }
+        staticFieldTypeDescriptor = getTypeDescriptors(staticFieldType);
+        staticFieldEnumComponent = getEnumComponents(staticFieldType);
+        staticFieldEnumTypeDescriptor = getTypeDescriptors(staticFieldEnumComponent);
+        staticFieldSourceTypeDescriptor = getSourceTypeDescriptors(staticFieldTypeDescriptor, staticFieldEnumTypeDescriptor);
     }
 
     public FastRowMapper(Class<T> mappedClass, String tableName, JdbcTemplate jdbc) {
@@ -72,7 +70,6 @@ public class FastRowMapper<T> implements RowMapper<T> {
         }
         staticFieldMap = new Integer[collumnMap.size()];
         staticFieldType = new Class[collumnMap.size()];
-        staticFieldConverter = new GenericConverter[collumnMap.size()];
 
         int dataObjIndex = 0;
         for (Parameter parameter : parameters) {
@@ -86,6 +83,48 @@ public class FastRowMapper<T> implements RowMapper<T> {
             dataObjIndex++;
         }
         resultFieldCount = dataObjIndex;
+        staticFieldTypeDescriptor = getTypeDescriptors(staticFieldType);
+        staticFieldEnumComponent = getEnumComponents(staticFieldType);
+        staticFieldEnumTypeDescriptor = getTypeDescriptors(staticFieldEnumComponent);
+        staticFieldSourceTypeDescriptor = getSourceTypeDescriptors(staticFieldTypeDescriptor, staticFieldEnumTypeDescriptor);
+    }
+
+    private static TypeDescriptor[] getTypeDescriptors(Class<?>[] fieldTypes) {
+        TypeDescriptor[] typeDescriptors = new TypeDescriptor[fieldTypes.length];
+        for (int i = 0; i < fieldTypes.length; i++) {
+            if (fieldTypes[i] != null)
+                typeDescriptors[i] = TypeDescriptor.valueOf(fieldTypes[i]);
+        }
+        return typeDescriptors;
+    }
+
+    private static Class<?>[] getEnumComponents(Class<?>[] fieldTypes) {
+        Class<?>[] enumComponents = new Class[fieldTypes.length];
+        for (int i = 0; i < fieldTypes.length; i++) {
+            Class<?> fieldType = fieldTypes[i];
+            if (fieldType != null && fieldType.isArray() && fieldType.getComponentType().isEnum())
+                enumComponents[i] = fieldType.getComponentType();
+        }
+        return enumComponents;
+    }
+
+    // Resolve conversion of every field when the mapper is created, fail early if a field can not be converted
+    private static TypeDescriptor[] getSourceTypeDescriptors(TypeDescriptor[] fieldTypes, TypeDescriptor[] enumComponents) {
+        TypeDescriptor[] sourceTypes = new TypeDescriptor[fieldTypes.length];
+        for (int i = 0; i < fieldTypes.length; i++) {
+            // Enum and enum array values are read as String
+            if (enumComponents[i] != null)
+                checkConvertible(stringTypeDescriptor, enumComponents[i]);
+            else if (fieldTypes[i] != null && fieldTypes[i].getType().isEnum())
+                sourceTypes[i] = checkConvertible(stringTypeDescriptor, fieldTypes[i]);
+        }
+        return sourceTypes;
+    }
+
+    private static TypeDescriptor checkConvertible(TypeDescriptor sourceType, TypeDescriptor targetType) {
+        if (!conversionService.canConvert(sourceType, targetType))
+            throw new ConverterNotFoundException(sourceType, targetType);
+        return sourceType;
     }
 
     private static <T> void checkParam(Class<T> mappedClass, Parameter parameter) {
@@ -122,11 +161,25 @@ public class FastRowMapper<T> implements RowMapper<T> {
         }
     }
 
+    private int getExpectedColumnCount() {
+        return staticFieldMap == null ? resultFieldCount : staticFieldMap.length;
+    }
+
+    public int getColumnCount(ResultSet rs) throws SQLException {
+        int columnCount = rs.getMetaData().getColumnCount();
+        int expectedCount = getExpectedColumnCount();
+        if (columnCount != expectedCount)
+            throw new IncorrectResultSetColumnCountException(expectedCount, columnCount);
+        return columnCount;
+    }
+
     @Override
     public T mapRow(ResultSet rs, int rowNum) throws SQLException {
-        ResultSetMetaData metaData = rs.getMetaData();
-        int columnCount = metaData.getColumnCount();
+        // Column count is validated on the first row of a result set, later rows have the same columns
+        return mapRow(rs, rowNum, rowNum == 0 ? getColumnCount(rs) : getExpectedColumnCount());
+    }
 
+    public T mapRow(ResultSet rs, int rowNum, int columnCount) throws SQLException {
         Object[] values = new Object[resultFieldCount];
 
         for (int i = 0; i < columnCount; i++) {
@@ -144,19 +197,17 @@ public class FastRowMapper<T> implements RowMapper<T> {
             // Convert type
             Object rawVal = JdbcUtils.getResultSetValue(rs, i + 1, targetType);
             if (rawVal != null && needConvert(rawVal.getClass(), targetType)) {
-                if (isEnumStringArray(rawVal, targetType))
-                    rawVal = convertEnumStringArray(rawVal, targetType.getComponentType(), i);
+                Class<?> enumComponent = staticFieldEnumComponent[i];
+                if (enumComponent != null && isStringArray(rawVal))
+                    rawVal = convertEnumStringArray(rawVal, staticFieldEnumTypeDescriptor[i]);
                 else if (isArray(rawVal, targetType))
                     rawVal = convertArray(rawVal, targetType.getComponentType());
                 else {
-                    TypeDescriptor sourceType = TypeDescriptor.valueOf(rawVal.getClass());
-                    TypeDescriptor targetTypeInfo = TypeDescriptor.valueOf(targetType);
-                    // Get cached converter
-                    GenericConverter converter = staticFieldConverter[i];
-                    if (converter == null)
-                        converter = staticFieldConverter[i] = getConverter(sourceType, targetTypeInfo);
-
-                    rawVal = converter.convert(rawVal, sourceType, targetTypeInfo);
+                    // Driver returned another value type than resolved, for example a number for an enum
+                    TypeDescriptor sourceType = staticFieldSourceTypeDescriptor[i];
+                    if (sourceType == null || sourceType.getType() != rawVal.getClass())
+                        sourceType = TypeDescriptor.forObject(rawVal);
+                    rawVal = conversionService.convert(rawVal, sourceType, staticFieldTypeDescriptor[i]);
                 }
             }
 
@@ -170,17 +221,6 @@ public class FastRowMapper<T> implements RowMapper<T> {
         }
     }
 
-    private static GenericConverter getConverter(TypeDescriptor sourceType, TypeDescriptor targetType) {
-        try {
-            GenericConverter converter = (GenericConverter) getConverter.invoke(conversionService, sourceType, targetType);
-            if (converter == null)
-                throw new ConverterNotFoundException(sourceType, targetType);
-            return converter;
-        } catch (IllegalAccessException | InvocationTargetException e) {
-            throw new RuntimeException(e);
-        }
-    }
-
     private static Object convertArray(Object rawArrayVal, Class<?> targetType) {
         Object[] rawValArray;
         try {
@@ -205,7 +245,7 @@ public class FastRowMapper<T> implements RowMapper<T> {
         }
     }
     
-    private Object convertEnumStringArray(Object rawArrayVal, Class<?> targetType, int index) {
+    private static Object convertEnumStringArray(Object rawArrayVal, TypeDescriptor targetType) {
         Object[] rawValArray;
         try {
             rawValArray = (Object[]) ((java.sql.Array) rawArrayVal).getArray();
@@ -213,28 +253,20 @@ public class FastRowMapper<T> implements RowMapper<T> {
             throw new RuntimeException(e);
         }
         if (rawValArray.length == 0)
-            return Array.newInstance(targetType, 0);
+            return Array.newInstance(targetType.getType(), 0);
         
         // Create enum array
-        Object enumArray = Array.newInstance(targetType, rawValArray.length);
-        TypeDescriptor sourceType = TypeDescriptor.valueOf(String.class);
-        TypeDescriptor targetTypeInfo = TypeDescriptor.valueOf(targetType);
-        GenericConverter converter = staticFieldConverter[index];
-        if (converter == null)
-            converter = staticFieldConverter[index] = getConverter(sourceType, targetTypeInfo);
-
+        Object enumArray = Array.newInstance(targetType.getType(), rawValArray.length);
         for (int i = 0; i < rawValArray.length; i++) {
-            Object converted = converter.convert(rawValArray[i], sourceType, targetTypeInfo);
+            Object converted = conversionService.convert(rawValArray[i], stringTypeDescriptor, targetType);
             Array.set(enumArray, i, converted);
         }
         return enumArray;
     }
 
-    private static boolean isEnumStringArray(Object sourceType, Class<?> targetType) {
+    private static boolean isStringArray(Object sourceType) {
         try {
-            return targetType.isArray() &&
-                    targetType.getComponentType().isEnum() &&
-                    ClassUtils.isAssignable(java.sql.Array.class, sourceType.getClass()) &&
+            return ClassUtils.isAssignable(java.sql.Array.class, sourceType.getClass()) &&
                     ((java.sql.Array) sourceType).getBaseType() == Types.VARCHAR;
         } catch (SQLException e) {
             throw new RuntimeException(e);
@@ -2,4 +2,12 @@ package com.wavjaby.jdbc.util;
 
 public interface IdentifierGenerator {
     long nextId();
+
+    // Ids for a batch of n rows, override to reserve them with one call
+    default long[] nextIds(int n) {
+        long[] ids = new long[n];
+        for (int i = 0; i < n; i++)
+            ids[i] = nextId();
+        return ids;
+    }
 }
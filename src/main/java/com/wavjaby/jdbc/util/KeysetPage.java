@@ -0,0 +1,25 @@
+package com.wavjaby.jdbc.util;
+
+import java.util.List;
+
+public class KeysetPage<T> {
+    private final List<T> content;
+    private final T next;
+
+    public KeysetPage(List<T> content, T next) {
+        this.content = content;
+        this.next = next;
+    }
+
+    public List<T> content() {
+        return content;
+    }
+
+    public T next() {
+        return next;
+    }
+
+    public boolean hasNext() {
+        return next != null;
+    }
+}
@@ -0,0 +1,139 @@
+package com.wavjaby.jdbc.util;
+
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.TransactionStatus;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.ToIntFunction;
+
+public class ParallelBatch {
+    public static final long DEFAULT_WAIT_TIMEOUT_MILLIS = TimeUnit.MINUTES.toMillis(5);
+
+    /**
+     * Split rows into at most parallelism partitions and write each partition on its own virtual thread,
+     * every partition runs in its own transaction on its own pooled connection.
+     * Partition transactions are started on the partition threads, so they never join a transaction the caller holds,
+     * only a single partition runs on the caller thread and joins the caller transaction.
+     * <p>
+     * When atomic is true, partition transactions are held open until every partition is written,
+     * then all are committed, or all are rolled back if any partition failed.
+     * This is not a distributed transaction, a failure during the final commits can still leave some partitions committed.
+     * Written partitions hold their connection while waiting, a pool with fewer free connections than partitions
+     * can keep the remaining partitions from starting. Waiting longer than {@link #DEFAULT_WAIT_TIMEOUT_MILLIS}
+     * for the other partitions fails the write and rolls back all partitions.
+     * <p>
+     * When atomic is false, each partition commits as soon as it is written,
+     * rows of successful partitions are kept when another partition fails.
+     *
+     * @param minPartitionSize rows are not split into partitions smaller than this
+     * @return sum of partition writer results
+     */
+    public static <T> int write(PlatformTransactionManager txManager, List<T> rows, int parallelism, int minPartitionSize, boolean atomic,
+                                ToIntFunction<List<T>> writer) {
+        return write(txManager, rows, parallelism, minPartitionSize, atomic, DEFAULT_WAIT_TIMEOUT_MILLIS, writer);
+    }
+
+    /**
+     * Same as {@link #write(PlatformTransactionManager, List, int, int, boolean, ToIntFunction)}.
+     *
+     * @param waitTimeoutMillis how long a written partition waits for the other partitions when atomic is true
+     */
+    public static <T> int write(PlatformTransactionManager txManager, List<T> rows, int parallelism, int minPartitionSize, boolean atomic,
+                                long waitTimeoutMillis, ToIntFunction<List<T>> writer) {
+        int partitions = Math.min(parallelism, Math.max(1, (rows.size() + minPartitionSize - 1) / minPartitionSize));
+        // Single partition runs on caller thread and joins the caller transaction if exist
+        if (partitions == 1)
+            return writePartition(txManager, rows, writer, null, null, 0);
+
+        int partitionSize = (rows.size() + partitions - 1) / partitions;
+        // Rounded up partition size can leave fewer partitions than requested
+        partitions = (rows.size() + partitionSize - 1) / partitionSize;
+        CountDownLatch written = atomic ? new CountDownLatch(partitions) : null;
+        AtomicBoolean failed = new AtomicBoolean();
+        List<Future<Integer>> results = new ArrayList<>(partitions);
+        try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+            for (int start = 0; start < rows.size(); start += partitionSize) {
+                List<T> partition = rows.subList(start, Math.min(start + partitionSize, rows.size()));
+                results.add(executor.submit(() -> writePartition(txManager, partition, writer, written, failed, waitTimeoutMillis)));
+            }
+        }
+
+        int total = 0;
+        RuntimeException error = null;
+        for (Future<Integer> result : results) {
+            try {
+                total += result.get();
+            } catch (ExecutionException | InterruptedException e) {
+                Throwable cause = e instanceof ExecutionException ? e.getCause() : e;
+                if (cause instanceof Error err)
+                    throw err;
+                if (error == null)
+                    error = cause instanceof RuntimeException runtime ? runtime : new IllegalStateException(cause);
+                else
+                    error.addSuppressed(cause);
+            }
+        }
+        if (error != null)
+            throw error;
+        return total;
+    }
+
+    private static <T> int writePartition(PlatformTransactionManager txManager, List<T> partition, ToIntFunction<List<T>> writer,
+                                          CountDownLatch written, AtomicBoolean failed, long waitTimeoutMillis) {
+        TransactionStatus status = null;
+        int count;
+        try {
+            status = txManager.getTransaction(TransactionDefinition.withDefaults());
+            count = writer.applyAsInt(partition);
+        } catch (RuntimeException | Error e) {
+            if (failed != null)
+                failed.set(true);
+            // Release partitions waiting for this one, they will see the failure and roll back
+            if (written != null)
+                releaseAll(written);
+            if (status != null)
+                txManager.rollback(status);
+            throw e;
+        }
+
+        if (written != null) {
+            written.countDown();
+            try {
+                if (!written.await(waitTimeoutMillis, TimeUnit.MILLISECONDS)) {
+                    failed.set(true);
+                    releaseAll(written);
+                    txManager.rollback(status);
+                    throw new IllegalStateException("Timed out after " + waitTimeoutMillis + "ms waiting for other partitions, " +
+                            "connection pool may have fewer free connections than partitions");
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                failed.set(true);
+                releaseAll(written);
+                txManager.rollback(status);
+                throw new IllegalStateException("Interrupted while waiting for other partitions", e);
+            }
+            // Other partition failed, rollback this one too
+            if (failed.get()) {
+                txManager.rollback(status);
+                return 0;
+            }
+        }
+        txManager.commit(status);
+        return count;
+    }
+
+    private static void releaseAll(CountDownLatch latch) {
+        while (latch.getCount() > 0)
+            latch.countDown();
+    }
+}
@@ -0,0 +1,63 @@
+package com.wavjaby.jdbc.util;
+
+import org.springframework.dao.TypeMismatchDataAccessException;
+import org.springframework.jdbc.core.ResultSetExtractor;
+
+import java.util.Arrays;
+
+public class PrimitiveArrayExtractor {
+    private static final int DEFAULT_CAPACITY = 16;
+
+    public static ResultSetExtractor<long[]> longArray(int initialCapacity) {
+        return rs -> {
+            long[] buffer = new long[Math.max(initialCapacity, DEFAULT_CAPACITY)];
+            int size = 0;
+            while (rs.next()) {
+                if (size == buffer.length)
+                    buffer = Arrays.copyOf(buffer, size << 1);
+                buffer[size] = rs.getLong(1);
+                if (rs.wasNull())
+                    throw nullValue(size);
+                size++;
+            }
+            return size == buffer.length ? buffer : Arrays.copyOf(buffer, size);
+        };
+    }
+
+    public static ResultSetExtractor<int[]> intArray(int initialCapacity) {
+        return rs -> {
+            int[] buffer = new int[Math.max(initialCapacity, DEFAULT_CAPACITY)];
+            int size = 0;
+            while (rs.next()) {
+                if (size == buffer.length)
+                    buffer = Arrays.copyOf(buffer, size << 1);
+                buffer[size] = rs.getInt(1);
+                if (rs.wasNull())
+                    throw nullValue(size);
+                size++;
+            }
+            return size == buffer.length ? buffer : Arrays.copyOf(buffer, size);
+        };
+    }
+
+    public static ResultSetExtractor<double[]> doubleArray(int initialCapacity) {
+        return rs -> {
+            double[] buffer = new double[Math.max(initialCapacity, DEFAULT_CAPACITY)];
+            int size = 0;
+            while (rs.next()) {
+                if (size == buffer.length)
+                    buffer = Arrays.copyOf(buffer, size << 1);
+                buffer[size] = rs.getDouble(1);
+                if (rs.wasNull())
+                    throw nullValue(size);
+                size++;
+            }
+            return size == buffer.length ? buffer : Arrays.copyOf(buffer, size);
+        };
+    }
+
+    // Primitive arrays can not hold SQL NULL, fail instead of returning 0
+    private static TypeMismatchDataAccessException nullValue(int rowIndex) {
+        return new TypeMismatchDataAccessException("Null value in row " + rowIndex + " can not be stored in primitive array, use List instead");
+    }
+}
@@ -0,0 +1,98 @@
+package com.wavjaby.jdbc.util;
+
+import org.springframework.core.convert.support.DefaultConversionService;
+
+import java.sql.Array;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.List;
+
+public class ResultSetUtil {
+
+    public static Boolean getBooleanOrNull(ResultSet rs, int columnIndex) throws SQLException {
+        boolean value = rs.getBoolean(columnIndex);
+        return rs.wasNull() ? null : value;
+    }
+
+    public static Byte getByteOrNull(ResultSet rs, int columnIndex) throws SQLException {
+        byte value = rs.getByte(columnIndex);
+        return rs.wasNull() ? null : value;
+    }
+
+    public static Short getShortOrNull(ResultSet rs, int columnIndex) throws SQLException {
+        short value = rs.getShort(columnIndex);
+        return rs.wasNull() ? null : value;
+    }
+
+    public static Integer getIntOrNull(ResultSet rs, int columnIndex) throws SQLException {
+        int value = rs.getInt(columnIndex);
+        return rs.wasNull() ? null : value;
+    }
+
+    public static Long getLongOrNull(ResultSet rs, int columnIndex) throws SQLException {
+        long value = rs.getLong(columnIndex);
+        return rs.wasNull() ? null : value;
+    }
+
+    public static Float getFloatOrNull(ResultSet rs, int columnIndex) throws SQLException {
+        float value = rs.getFloat(columnIndex);
+        return rs.wasNull() ? null : value;
+    }
+
+    public static Double getDoubleOrNull(ResultSet rs, int columnIndex) throws SQLException {
+        double value = rs.getDouble(columnIndex);
+        return rs.wasNull() ? null : value;
+    }
+
+    public static char getChar(ResultSet rs, int columnIndex) throws SQLException {
+        String value = rs.getString(columnIndex);
+        return value == null || value.isEmpty() ? '\0' : value.charAt(0);
+    }
+
+    public static Character getCharOrNull(ResultSet rs, int columnIndex) throws SQLException {
+        String value = rs.getString(columnIndex);
+        return value == null || value.isEmpty() ? null : value.charAt(0);
+    }
+
+    public static <E extends Enum<E>> E getEnum(ResultSet rs, int columnIndex, Class<E> enumType) throws SQLException {
+        String value = rs.getString(columnIndex);
+        return value == null ? null : Enum.valueOf(enumType, value);
+    }
+
+    public static <T> T[] getArray(ResultSet rs, int columnIndex, Class<T[]> arrayType) throws SQLException {
+        Array array = rs.getArray(columnIndex);
+        if (array == null)
+            return null;
+        try {
+            Object[] values = (Object[]) array.getArray();
+            if (arrayType.isInstance(values))
+                return arrayType.cast(values);
+            try {
+                return Arrays.copyOf(values, values.length, arrayType);
+            } catch (ArrayStoreException e) {
+                // Element type returned by driver is different, convert each element
+                return DefaultConversionService.getSharedInstance().convert(values, arrayType);
+            }
+        } finally {
+            array.free();
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <E extends Enum<E>> E[] getEnumArray(ResultSet rs, int columnIndex, Class<E> enumType) throws SQLException {
+        String[] values = getArray(rs, columnIndex, String[].class);
+        if (values == null)
+            return null;
+        E[] result = (E[]) java.lang.reflect.Array.newInstance(enumType, values.length);
+        for (int i = 0; i < values.length; i++)
+            result[i] = values[i] == null ? null : Enum.valueOf(enumType, values[i]);
+        return result;
+    }
+
+    @SuppressWarnings("unchecked")
+    public static <T> List<T> getList(ResultSet rs, int columnIndex, Class<T> elementType) throws SQLException {
+        T[] values = getArray(rs, columnIndex, (Class<T[]>) java.lang.reflect.Array.newInstance(elementType, 0).getClass());
+        return values == null ? null : Arrays.asList(values);
+    }
+}
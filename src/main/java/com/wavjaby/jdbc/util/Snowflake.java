@@ -9,6 +9,9 @@ import java.net.NetworkInterface;
 import java.net.SocketException;
 import java.net.UnknownHostException;
 import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
 
 @Service
 public class Snowflake implements IdentifierGenerator {
@@ -17,16 +20,22 @@ public class Snowflake implements IdentifierGenerator {
     private final long epoch;
 
     private static final long workerIdBits = 10L;
-    public static final long workerIdMax = ~(-1L << workerIdBits);
+    private static final long workerIdMax = ~(-1L << workerIdBits);
     private static final long sequenceBits = 12L;
-    public static final long sequenceMax = ~(-1L << sequenceBits);
+    private static final long sequenceMax = ~(-1L << sequenceBits);
 
     private static final long workerIdShift = sequenceBits;
     private static final long timestampLeftShift = sequenceBits + workerIdBits;
 
     private final long workerId;
-    private long lastTimestamp;
-    private long sequence = 0;
+    // Last timestamp and sequence packed as (timestamp << sequenceBits) | sequence, updated by CAS
+    private final AtomicLong state;
+
+    // Milliseconds the logical clock may run ahead of wall time, 0 fails when the clock moves backwards
+    private volatile long driftBudgetMillis = 0;
+    private final AtomicLong maxDriftMillis = new AtomicLong();
+    private final LongAdder sequenceExhaustedCount = new LongAdder();
+    private final LongAdder driftBudgetExceededCount = new LongAdder();
 
     public Snowflake() throws SocketException, UnknownHostException {
         this.epoch = 1704067200000L; // 2024-01-01 00:00:00+00:00
@@ -50,38 +59,141 @@ public class Snowflake implements IdentifierGenerator {
         }
 
         this.workerId = generatedWorkerId;
-        this.lastTimestamp = System.currentTimeMillis();
+        this.state = new AtomicLong(System.currentTimeMillis() << sequenceBits);
     }
     
     public Snowflake(long workerId, long epochTimestamp) {
         this.workerId = workerId;
         this.epoch = epochTimestamp;
-        this.lastTimestamp = System.currentTimeMillis();
+        this.state = new AtomicLong(System.currentTimeMillis() << sequenceBits);
     }
 
     @Override
-    public synchronized long nextId() {
-        long timestamp = System.currentTimeMillis();
+    public long nextId() {
+        return toId(claim(1));
+    }
 
-        if (timestamp < lastTimestamp) {
-            logger.error("Clock is moving backwards. last timestamp: {}", lastTimestamp);
-            System.exit(1);
+    /**
+     * Reserve n ids, each CAS claims the remaining sequence range of the current millisecond
+     */
+    @Override
+    public long[] nextIds(int n) {
+        long[] ids = new long[n];
+        int filled = 0;
+        while (filled < n) {
+            long first = claim(n - filled);
+            long id = toId(first);
+            long count = Math.min(n - filled, sequenceMax - (first & sequenceMax) + 1);
+            for (int i = 0; i < count; i++)
+                ids[filled++] = id + i;
         }
+        return ids;
+    }
 
-        if (lastTimestamp == timestamp) {
-            // Get next millisecond if sequence is full
-            sequence = (sequence + 1) & sequenceMax;
-            if (sequence == 0L) {
-                timestamp = nextMillis(lastTimestamp);
+    // Claim up to count sequences in one millisecond, returns packed state of the first claimed sequence
+    private long claim(int count) {
+        // Count each event once per claim, not once per retry
+        boolean sequenceExhausted = false, driftBudgetExceeded = false;
+        while (true) {
+            // Read state before clock, so timestamp in state is never ahead of the clock unless borrowed
+            long last = state.get();
+            long lastTimestamp = last >>> sequenceBits;
+            long now = currentTimeMillis();
+            long timestamp = now;
+            long driftBudget = driftBudgetMillis;
+
+            if (timestamp < lastTimestamp) {
+                if (driftBudget == 0)
+                    throw new IllegalStateException("Clock is moving backwards. last timestamp: " + lastTimestamp + ", now: " + now);
+                // Wait for the clock to come back within drift budget
+                if (lastTimestamp - now > driftBudget) {
+                    driftBudgetExceeded = true;
+                    waitUntil(lastTimestamp - driftBudget);
+                    continue;
+                }
+                // Continue on logical clock until wall time catches up
+                timestamp = lastTimestamp;
+            }
+
+            long first;
+            if (lastTimestamp == timestamp) {
+                if ((last & sequenceMax) == sequenceMax) {
+                    sequenceExhausted = true;
+                    // Borrow next millisecond if within drift budget, otherwise wait for it
+                    if (lastTimestamp + 1 - now > driftBudget) {
+                        if (driftBudget != 0)
+                            driftBudgetExceeded = true;
+                        waitUntil(lastTimestamp + 1 - driftBudget);
+                        continue;
+                    }
+                    timestamp = lastTimestamp + 1;
+                    first = timestamp << sequenceBits;
+                } else
+                    first = last + 1;
+            } else {
+                first = timestamp << sequenceBits;
+            }
+
+            long next = first + Math.min(count, sequenceMax - (first & sequenceMax) + 1) - 1;
+            if (state.compareAndSet(last, next)) {
+                if (timestamp > now)
+                    maxDriftMillis.accumulateAndGet(timestamp - now, Math::max);
+                if (sequenceExhausted)
+                    sequenceExhaustedCount.increment();
+                if (driftBudgetExceeded)
+                    driftBudgetExceededCount.increment();
+                return first;
             }
-        } else {
-            sequence = 0;
         }
+    }
 
-        lastTimestamp = timestamp;
-        return ((timestamp - epoch) << timestampLeftShift) |
+    /**
+     * Allow issuing ids from a logical clock ahead of wall time by up to driftBudgetMillis,
+     * when the clock moves backwards or the sequence of a millisecond runs out, instead of failing or waiting.
+     * Ids stay unique and increasing, the logical clock catches up when wall time passes it.
+     * The budget can not be lowered below the current drift, borrowed time would look like a backwards clock.
+     */
+    public void setDriftBudgetMillis(long driftBudgetMillis) {
+        if (driftBudgetMillis < 0)
+            throw new IllegalArgumentException("Drift budget must not be negative");
+        long drift = getDriftMillis();
+        if (driftBudgetMillis < drift)
+            throw new IllegalStateException("Drift budget " + driftBudgetMillis + " ms is below current drift " + drift + " ms");
+        this.driftBudgetMillis = driftBudgetMillis;
+    }
+
+    public long getDriftBudgetMillis() {
+        return driftBudgetMillis;
+    }
+
+    // Milliseconds the logical clock is currently ahead of wall time
+    public long getDriftMillis() {
+        return Math.max(0, (state.get() >>> sequenceBits) - currentTimeMillis());
+    }
+
+    public long getMaxDriftMillis() {
+        return maxDriftMillis.get();
+    }
+
+    // Id claims that found the sequence of a millisecond used up
+    public long getSequenceExhaustedCount() {
+        return sequenceExhaustedCount.sum();
+    }
+
+    // Id claims that waited because the drift budget was used up
+    public long getDriftBudgetExceededCount() {
+        return driftBudgetExceededCount.sum();
+    }
+
+    // Clock source of timestamp
+    protected long currentTimeMillis() {
+        return System.currentTimeMillis();
+    }
+
+    private long toId(long packed) {
+        return (((packed >>> sequenceBits) - epoch) << timestampLeftShift) |
                (workerId << workerIdShift) |
-               sequence;
+               (packed & sequenceMax);
     }
 
     private long generateFallbackWorkerId(InetAddress localHost) {
@@ -98,15 +210,14 @@ public class Snowflake implements IdentifierGenerator {
         return (Math.abs(systemInfo.hashCode()) & 0x7FFFFFFF) % workerIdMax;
     }
 
-    @SuppressWarnings("ALL")
-    private long nextMillis(long lastTimestamp) {
-        long timestamp;
-        while ((timestamp = System.currentTimeMillis()) == lastTimestamp) {
-            try {
-                Thread.sleep(0);
-            } catch (InterruptedException ignore) {
-            }
+    // Wait without holding a monitor, virtual threads are not pinned
+    private void waitUntil(long timestamp) {
+        long now;
+        while ((now = currentTimeMillis()) < timestamp) {
+            if (timestamp - now > 1)
+                LockSupport.parkNanos((timestamp - now - 1) * 1_000_000L);
+            else
+                Thread.onSpinWait();
         }
-        return timestamp;
     }
 }